@@ -0,0 +1,87 @@
+package com.chaschev.install;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Builds synthetic local repositories for benchmarks: a tree of small jars laid out like a Maven repository.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class BenchmarkFiles {
+    public static File tempDir(String prefix) throws IOException {
+        File dir = File.createTempFile(prefix, "");
+
+        if (!dir.delete() || !dir.mkdirs()) {
+            throw new IOException("could not create " + dir);
+        }
+
+        return dir;
+    }
+
+    /**
+     * @return <code>count</code> jars under <code>repository</code>, each containing one class entry
+     */
+    public static List<File> syntheticRepository(File repository, int count) throws IOException {
+        List<File> jars = new ArrayList<File>(count);
+
+        for (int i = 0; i < count; i++) {
+            String artifactId = "lib-" + i;
+            File dir = new File(repository, "com/acme/group" + (i % 10) + "/" + artifactId + "/1.0." + i);
+
+            dir.mkdirs();
+
+            File jar = new File(dir, artifactId + "-1.0." + i + ".jar");
+
+            writeJar(jar, "com/acme/lib" + i + "/Placeholder.class", new byte[0]);
+
+            jars.add(jar);
+        }
+
+        return jars;
+    }
+
+    public static void writeJar(File jar, String entryName, byte[] content) throws IOException {
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+
+        try {
+            out.putNextEntry(new JarEntry(entryName));
+            out.write(content);
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+    }
+
+    public static File writeClasspathFile(File file, List<File> entries) throws IOException {
+        PrintWriter writer = new PrintWriter(file, "UTF-8");
+
+        try {
+            for (File entry : entries) {
+                writer.println(entry.getAbsolutePath());
+            }
+        } finally {
+            writer.close();
+        }
+
+        return file;
+    }
+
+    public static void delete(File file) {
+        File[] children = file.listFiles();
+
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
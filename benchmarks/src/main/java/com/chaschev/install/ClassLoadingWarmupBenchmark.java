@@ -0,0 +1,144 @@
+package com.chaschev.install;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Warm-up of a multi-threaded main: each thread loads its share of Guava's classes through a fresh classloader.
+ * A URLClassLoader subclass which doesn't register as parallel capable serves as the serial baseline, it locks
+ * the whole loader for each class.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassLoadingWarmupBenchmark {
+    /**
+     * Not registered as parallel capable.
+     */
+    public static class SerialClassLoader extends URLClassLoader {
+        public SerialClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+    }
+
+    @Param({"1", "4", "12"})
+    public int threads;
+
+    @Param({"serial", "url", "indexed"})
+    public String loader;
+
+    private File dir;
+    private File classpathFile;
+    private List<URL> urls;
+    private List<List<String>> shares;
+
+    @Setup
+    public void setUp() throws Exception {
+        File jar = new File(com.google.common.base.Preconditions.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+        dir = BenchmarkFiles.tempDir("warmup");
+        classpathFile = BenchmarkFiles.writeClasspathFile(new File(dir, "com.acme.tool"), Collections.singletonList(jar));
+
+        PackageIndex.write(classpathFile, Collections.singletonList(jar));
+
+        urls = Collections.singletonList(jar.toURI().toURL());
+
+        List<String> classNames = new ArrayList<String>();
+
+        ZipFile zip = new ZipFile(jar);
+
+        try {
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                String name = entries.nextElement().getName();
+
+                if (name.startsWith("com/google/common/") && name.endsWith(".class")) {
+                    classNames.add(name.substring(0, name.length() - ".class".length()).replace('/', '.'));
+                }
+            }
+        } finally {
+            zip.close();
+        }
+
+        shares = new ArrayList<List<String>>();
+
+        for (int i = 0; i < threads; i++) {
+            shares.add(new ArrayList<String>());
+        }
+
+        for (int i = 0; i < classNames.size(); i++) {
+            shares.get(i % threads).add(classNames.get(i));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public void loadClasses() throws Exception {
+        //the platform loader as the parent, so classes are loaded by the tested loader
+        ClassLoader parent = ClassLoader.getSystemClassLoader().getParent();
+
+        final ClassLoader classLoader;
+
+        if ("serial".equals(loader)) {
+            classLoader = new SerialClassLoader(urls.toArray(new URL[1]), parent);
+        } else if ("url".equals(loader)) {
+            classLoader = new URLClassLoader(urls.toArray(new URL[1]), parent);
+        } else {
+            classLoader = new IndexedClassLoader(urls, PackageIndex.read(classpathFile, urls), parent);
+        }
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<Thread>();
+
+        for (final List<String> share : shares) {
+            Thread worker = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+
+                        for (String className : share) {
+                            try {
+                                Class.forName(className, false, classLoader);
+                            } catch (Throwable e) {
+                                //optional dependencies of Guava are missing
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+
+            worker.start();
+            workers.add(worker);
+        }
+
+        start.countDown();
+
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        ((Closeable) classLoader).close();
+    }
+}
@@ -0,0 +1,80 @@
+package com.chaschev.install;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fixed cost of <code>ExecObject.ClassRunner.invoke</code>: creating the isolated thread group,
+ * starting the main thread, joining it and cleaning up, for a main method which does nothing and for a main method
+ * which keeps starting short-lived non-daemon threads.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClassRunnerBenchmark {
+    public static class NoopMain {
+        public static void main(String[] args) {
+        }
+    }
+
+    /**
+     * Starts 200 non-daemon threads in chains, so new threads keep appearing while the runner joins.
+     */
+    public static class ThreadsMain {
+        public static void main(String[] args) {
+            for (int i = 0; i < 20; i++) {
+                startChain(10);
+            }
+        }
+
+        private static void startChain(final int length) {
+            if (length == 0) return;
+
+            new Thread(new Runnable() {
+                public void run() {
+                    startChain(length - 1);
+                }
+            }).start();
+        }
+    }
+
+    private Properties properties;
+
+    @Setup
+    public void setUp() {
+        properties = (Properties) System.getProperties().clone();
+    }
+
+    @Benchmark
+    public void noopMain() {
+        run(NoopMain.class);
+    }
+
+    @Benchmark
+    public void threadsMain() {
+        run(ThreadsMain.class);
+    }
+
+    private void run(Class<?> mainClass) {
+        new ExecObject.ClassRunner(
+            mainClass.getName(), Collections.<URL>emptyList(),
+            "",
+            new String[0],
+            true,
+            properties,
+            15000,
+            true,
+            null,
+            null
+        ).setClassLoader(ClassRunnerBenchmark.class.getClassLoader()).invoke();
+    }
+}
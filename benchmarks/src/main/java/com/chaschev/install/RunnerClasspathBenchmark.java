@@ -0,0 +1,53 @@
+package com.chaschev.install;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how fast <code>Runner</code> reads an installed classpath: the text classpath file vs the binary index.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RunnerClasspathBenchmark {
+    @Param({"10", "150", "500"})
+    public int classpathSize;
+
+    private File dir;
+    private File classpathFile;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = BenchmarkFiles.tempDir("runner-classpath");
+
+        List<File> jars = BenchmarkFiles.syntheticRepository(new File(dir, "repository"), classpathSize);
+
+        classpathFile = BenchmarkFiles.writeClasspathFile(new File(dir, "com.acme.tool"), jars);
+
+        ClasspathIndex.write(classpathFile, jars, System.getProperty("user.home"));
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public List<URL> textFile() throws Exception {
+        return Runner.readClasspathFile(classpathFile);
+    }
+
+    @Benchmark
+    public List<URL> index() throws Exception {
+        return Runner.readClasspath(classpathFile);
+    }
+}
@@ -0,0 +1,138 @@
+package com.chaschev.install;
+
+import com.google.common.io.ByteStreams;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * End-to-end "time to main()" of an installed shortcut: spawns <code>java -cp runner Runner classpathFile class</code>
+ * against a synthetic local repository and reports the time until the app's main is entered and the total
+ * process time. The main class is in the last jar, so a classloader over separate jars has to probe all of them.
+ *
+ * Rows: the text classpath file, the classpath index, the package index for {@link IndexedClassLoader} and
+ * a merged jar.
+ *
+ * Usage: <code>TimeToMainHarness [classpathSizes, i.e. 10,150,500] [runs] [extra JVM options...]</code>
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class TimeToMainHarness {
+    public static void main(String[] args) throws Exception {
+        String[] sizes = (args.length > 0 ? args[0] : "10,150,500").split(",");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        List<String> jvmOptions = args.length > 2 ? Arrays.asList(args).subList(2, args.length) : new ArrayList<String>();
+
+        File runnerJar = new File(Runner.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        File javaExe = new File(System.getProperty("java.home"), "bin/java");
+
+        System.out.printf("%-10s %-10s %14s %14s%n", "jars", "index", "main, ms", "total, ms");
+
+        for (String size : sizes) {
+            File dir = BenchmarkFiles.tempDir("time-to-main");
+
+            try {
+                List<File> jars = BenchmarkFiles.syntheticRepository(new File(dir, "repository"), Integer.parseInt(size.trim()));
+
+                File appJar = new File(dir, "app.jar");
+                String entryName = TimeToMainTarget.class.getName().replace('.', '/') + ".class";
+                InputStream in = TimeToMainHarness.class.getClassLoader().getResourceAsStream(entryName);
+
+                try {
+                    BenchmarkFiles.writeJar(appJar, entryName, ByteStreams.toByteArray(in));
+                } finally {
+                    in.close();
+                }
+
+                jars.add(appJar);
+
+                File classpathFile = BenchmarkFiles.writeClasspathFile(new File(dir, "com.acme.tool"), jars);
+
+                List<String> command = new ArrayList<String>();
+
+                command.add(javaExe.getAbsolutePath());
+                command.addAll(jvmOptions);
+                command.addAll(Arrays.asList("-cp", runnerJar.getAbsolutePath(), Runner.class.getName(),
+                    classpathFile.getAbsolutePath(), TimeToMainTarget.class.getName()));
+
+                measure(size, "no", command, runs);
+
+                ClasspathIndex.write(classpathFile, jars, System.getProperty("user.home"));
+
+                measure(size, "yes", command, runs);
+
+                PackageIndex.write(classpathFile, jars);
+
+                measure(size, "packages", command, runs);
+
+                PackageIndex.indexFile(classpathFile).delete();
+
+                File mergedJar = new File(dir, "com.acme.tool.jar");
+
+                new JarMerger(new SystemStreamLog()).merge(jars, mergedJar);
+
+                BenchmarkFiles.writeClasspathFile(classpathFile, Collections.singletonList(mergedJar));
+                ClasspathIndex.write(classpathFile, Collections.singletonList(mergedJar), System.getProperty("user.home"));
+
+                measure(size, "merged", command, runs);
+            } finally {
+                BenchmarkFiles.delete(dir);
+            }
+        }
+    }
+
+    private static void measure(String size, String index, List<String> command, int runs) throws Exception {
+        //warm up the file system cache
+        run(command);
+
+        long mainSum = 0, totalSum = 0;
+
+        for (int i = 0; i < runs; i++) {
+            long[] times = run(command);
+
+            mainSum += times[0];
+            totalSum += times[1];
+        }
+
+        System.out.printf("%-10s %-10s %14.1f %14.1f%n", size.trim(), index, (double) mainSum / runs, (double) totalSum / runs);
+    }
+
+    /**
+     * @return time to main and total time in ms
+     */
+    private static long[] run(List<String> command) throws Exception {
+        long start = System.currentTimeMillis();
+
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        process.getOutputStream().close();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+
+        long mainTime = -1;
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("main ")) {
+                mainTime = Long.parseLong(line.substring(5).trim());
+            }
+        }
+
+        int exitCode = process.waitFor();
+
+        long end = System.currentTimeMillis();
+
+        if (exitCode != 0 || mainTime < 0) {
+            throw new IllegalStateException("launch failed with exit code " + exitCode + ": " + command);
+        }
+
+        return new long[]{mainTime - start, end - start};
+    }
+}
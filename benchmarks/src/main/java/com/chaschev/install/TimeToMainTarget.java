@@ -0,0 +1,12 @@
+package com.chaschev.install;
+
+/**
+ * Main class launched by {@link TimeToMainHarness}, prints the time it was entered.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class TimeToMainTarget {
+    public static void main(String[] args) {
+        System.out.println("main " + System.currentTimeMillis());
+    }
+}
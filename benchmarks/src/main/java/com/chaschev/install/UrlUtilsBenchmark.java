@@ -0,0 +1,44 @@
+package com.chaschev.install;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares <code>UrlUtils.getURL</code> with the JDK's <code>File.toURI().toURL()</code>.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlUtilsBenchmark {
+    @Param({"plain", "spaces"})
+    public String path;
+
+    private File file;
+
+    @Setup
+    public void setUp() {
+        String home = System.getProperty("user.home");
+
+        file = "plain".equals(path) ?
+            new File(home, ".m2/repository/org/apache/commons/commons-lang3/3.1/commons-lang3-3.1.jar") :
+            new File(home, "My Documents/.m2/repository/org/apache/commons/commons-lang3/3.1/commons-lang3-3.1.jar");
+    }
+
+    @Benchmark
+    public URL getURL() throws Exception {
+        return UrlUtils.getURL(file);
+    }
+
+    @Benchmark
+    public URL toURI() throws Exception {
+        return file.toURI().toURL();
+    }
+}
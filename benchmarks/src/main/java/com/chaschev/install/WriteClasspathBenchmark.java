@@ -0,0 +1,53 @@
+package com.chaschev.install;
+
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures <code>InstallMojo.writeClasspath</code>, which writes the classpath file and its index at install time.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WriteClasspathBenchmark {
+    @Param({"10", "150", "500"})
+    public int classpathSize;
+
+    private File dir;
+    private File installToDir;
+    private File runnerJar;
+    private Artifact artifact;
+    private List<File> jars;
+
+    @Setup
+    public void setUp() throws Exception {
+        dir = BenchmarkFiles.tempDir("write-classpath");
+        installToDir = new File(dir, "bin");
+        installToDir.mkdirs();
+
+        jars = BenchmarkFiles.syntheticRepository(new File(dir, "repository"), classpathSize);
+
+        artifact = new DefaultArtifact("com.acme:lib-0:1.0.0").setFile(jars.get(0));
+        runnerJar = jars.get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        BenchmarkFiles.delete(dir);
+    }
+
+    @Benchmark
+    public File writeClasspath() throws Exception {
+        return InstallMojo.writeClasspath(artifact, jars, installToDir, runnerJar);
+    }
+}
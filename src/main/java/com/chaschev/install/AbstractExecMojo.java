@@ -1,6 +1,7 @@
 package com.chaschev.install;
 
 import com.chaschev.chutils.util.Exceptions;
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang3.SystemUtils;
@@ -13,23 +14,31 @@ import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
 import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.RepositorySystemSession;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.collection.CollectRequest;
+import org.eclipse.aether.collection.DependencyCollectionException;
 import org.eclipse.aether.graph.Dependency;
 import org.eclipse.aether.graph.DependencyFilter;
+import org.eclipse.aether.graph.DependencyNode;
 import org.eclipse.aether.repository.RemoteRepository;
 import org.eclipse.aether.repository.RepositoryPolicy;
 import org.eclipse.aether.resolution.*;
 import org.eclipse.aether.util.artifact.JavaScopes;
 import org.eclipse.aether.util.filter.DependencyFilterUtils;
+import org.eclipse.aether.util.graph.visitor.FilteringDependencyVisitor;
+import org.eclipse.aether.util.graph.visitor.PreorderNodeListGenerator;
+import org.eclipse.aether.util.graph.visitor.TreeDependencyVisitor;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
 import org.eclipse.aether.version.Version;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -42,7 +51,7 @@ public abstract class AbstractExecMojo extends AbstractMojo {
     /**
      * Artifact to execute. I.e. com.chaschev:cap4j:1.0 or com.chaschev.
      */
-    @Parameter(property = "artifact", required = true)
+    @Parameter(property = "artifact")
     protected String artifactName;
 
     @Parameter(property = "class")
@@ -75,14 +84,110 @@ public abstract class AbstractExecMojo extends AbstractMojo {
     @Parameter
     protected Property[] systemProperties;
 
+    /**
+     * JVM options, i.e. -Xmx2g -XX:+UseG1GC. They are used by exec with fork and are written into shortcuts by install.
+     */
+    @Parameter(property = "jvmOptions")
+    protected String jvmOptions;
+
     @Parameter(property = "forceDownload", defaultValue = "false")
     private boolean forceDownload;
 
     @Parameter(property = "localRepo")
     protected String localRepo;
 
+    /**
+     * Number of concurrent downloads from a repository. Each repository has its own pool of this size,
+     * so it's also the number of connections per repository.
+     */
+    @Parameter(property = "downloadThreads", defaultValue = "8")
+    protected int downloadThreads;
+
+    /**
+     * Number of concurrent metadata downloads.
+     */
+    @Parameter(property = "metadataThreads", defaultValue = "4")
+    protected int metadataThreads;
+
+    /**
+     * Report download progress to the console.
+     */
+    @Parameter(property = "progress", defaultValue = "false")
+    protected boolean progress;
+
+    /**
+     * Try remote repositories in the order of their expected cost, which is computed from their response times and
+     * hit rates recorded in previous runs. Repositories without a profile go first.
+     */
+    @Parameter(property = "adaptiveRepositories", defaultValue = "false")
+    protected boolean adaptiveRepositories;
+
+    /**
+     * When a download from the first repository takes longer than a percentile of its response times, request
+     * the artifact from the other repositories as well and use the first answer.
+     */
+    @Parameter(property = "hedgeRequests", defaultValue = "false")
+    protected boolean hedgeRequests;
+
+    /**
+     * The percentile of response times of the first repository to hedge a download after.
+     */
+    @Parameter(property = "hedgePercentile", defaultValue = "90")
+    protected int hedgePercentile;
+
+    /**
+     * The delay to hedge a download after while the first repository has too few recorded responses, ms.
+     */
+    @Parameter(property = "hedgeDelay", defaultValue = "1000")
+    protected long hedgeDelay;
+
+    /**
+     * A host-wide content-addressed store of release artifacts shared by users of the host. Artifacts found there are
+     * not downloaded, resolved artifacts are added to it.
+     */
+    @Parameter(property = "store")
+    protected File store;
+
+    /**
+     * How long a version found for LATEST or RELEASE is reused without querying remote repositories, in minutes.
+     * 0 disables the cache.
+     */
+    @Parameter(property = "versionCacheTtl", defaultValue = "60")
+    protected long versionCacheTtl;
+
+    /**
+     * Ignore cached versions and resolution results.
+     */
+    @Parameter(property = "refresh", defaultValue = "false")
+    protected boolean refresh;
+
+    /**
+     * Write phase timings as JSON to this file.
+     */
+    @Parameter(property = Timings.PROPERTY)
+    protected File timingsFile;
+
+    /**
+     * Write download statistics per remote repository as JSON to this file.
+     */
+    @Parameter(property = RepositoryMetrics.PROPERTY)
+    protected File repositoryMetricsFile;
+
+    protected final Timings timings = new Timings();
+
+    protected File localRepository;
+
+    private VersionCache versionCache;
+
     protected List<RemoteRepository> repositories;
 
+    /**
+     * Repositories in the declared order, which is kept for cache keys when {@link #repositories} are reordered.
+     */
+    protected List<RemoteRepository> declaredRepositories;
+
+    private RepositoryProfile repositoryProfile;
+
     @Component
     private ArtifactRepositoryFactory artifactRepositoryFactory;
 
@@ -98,61 +203,393 @@ public abstract class AbstractExecMojo extends AbstractMojo {
 //    @Component
     private RepositorySystemSession session;
 
+    private ConsoleTransferListener transferListener;
+
+    protected final RepositoryMetrics repositoryMetrics = new RepositoryMetrics();
+
+    private StreamingDigests streamingDigests;
+
+    /**
+     * Digests of jars in the local repository, recorded while they are downloaded.
+     */
+    protected DigestIndex digestIndex;
+
+    private ArtifactStore artifactStore;
+
     protected void initialize() throws VersionRangeResolutionException, MojoFailureException {
+        Preconditions.checkNotNull(artifactName, "you need to set artifact with -Dartifact=groupId:artifactId[:version]");
+
+        initSession();
+
+        artifactVersion = resolveVersion(artifactName, artifactVersion);
+
+        artifactName += ":" + artifactVersion;
+    }
+
+    protected void initSession() {
         File repositoryFile = localRepo == null ?
             new File(SystemUtils.getUserHome(), ".m2/repository") :
             new File(localRepo);
 
         Preconditions.checkArgument(repositoryFile.exists(), "could not find local repo at: %s", repositoryFile.getAbsolutePath());
 
-        repositories = new RepositoryParser().parse(remoteRepositories);
+        localRepository = repositoryFile;
 
-        session = Booter.newSession(system, repositoryFile);
+        repositories = declaredRepositories = new RepositoryParser().parse(remoteRepositories);
 
-        if ("LATEST".equals(artifactVersion)) {
-            Artifact artifact = new DefaultArtifact(artifactName + ":[0,)");
+        if (adaptiveRepositories || hedgeRequests) {
+            repositoryProfile = new RepositoryProfile(new File(getCacheDir(), "repositories.properties"));
+        }
 
-            VersionRangeRequest rangeRequest = new VersionRangeRequest();
+        if (adaptiveRepositories) {
+            repositories = repositoryProfile.order(declaredRepositories);
 
-            rangeRequest.setArtifact(artifact);
-            rangeRequest.setRepositories(repositories);
+            if (!repositories.equals(declaredRepositories)) {
+                getLog().info("trying repositories in order: " + Joiner.on(", ").join(repositoryIds(repositories)));
+            }
 
-            VersionRangeResult rangeResult = system.resolveVersionRange(session, rangeRequest);
+            if (getLog().isDebugEnabled()) {
+                for (RemoteRepository repository : repositories) {
+                    getLog().debug(repositoryProfile.describe(repository));
+                }
+            }
+        }
+
+        transferListener = progress ? new ConsoleTransferListener() : null;
+
+        streamingDigests = new StreamingDigests(getLog());
+
+        digestIndex = new DigestIndex(new File(getCacheDir(), "digests.properties"));
 
-            List<Version> versions = Lists.reverse(rangeResult.getVersions());
+        DefaultRepositorySystemSession newSession = Booter.newSession(system, repositoryFile, downloadThreads, metadataThreads,
+            ChainedTransferListener.newInstance(repositoryMetrics,
+                ChainedTransferListener.newInstance(streamingDigests, transferListener)));
+
+        if (store != null) {
+            artifactStore = new ArtifactStore(store, digestIndex, getLog());
+            newSession.setWorkspaceReader(artifactStore);
+        }
+
+        session = newSession;
+
+        versionCache = new VersionCache(new File(getCacheDir(), "versions.properties"),
+            versionCacheTtl * 60 * 1000);
+    }
+
+    /**
+     * Finds the latest version when <code>version</code> is LATEST and the latest release when it is RELEASE. Safe to
+     * call concurrently.
+     *
+     * @param artifactName groupId:artifactId
+     * @return the version to use
+     */
+    protected String resolveVersion(String artifactName, String version) throws VersionRangeResolutionException, MojoFailureException {
+        if (!"LATEST".equals(version) && !"RELEASE".equals(version)) {
+            return version;
+        }
+
+        boolean snapshots = this.snapshots && !"RELEASE".equals(version);
+
+        if (versionCacheTtl > 0 && !refresh) {
+            String cachedVersion = versionCache.get(artifactName, snapshots, declaredRepositories);
+
+            if (cachedVersion != null) {
+                getLog().info("using cached latest version for " + artifactName + ": " + cachedVersion);
+
+                return cachedVersion;
+            }
+        }
+
+        Artifact artifact = new DefaultArtifact(artifactName + ":[0,)");
+
+        VersionRangeRequest rangeRequest = new VersionRangeRequest();
+
+        rangeRequest.setArtifact(artifact);
+        rangeRequest.setRepositories(repositories);
+
+        long start = System.nanoTime();
+
+        VersionRangeResult rangeResult = system.resolveVersionRange(session, rangeRequest);
+
+        timings.record("versionRange", start);
+
+        List<Version> versions = Lists.reverse(rangeResult.getVersions());
 
 //            Version matchedVersion = rangeRequest.;
-            Version matchedVersion = null;
+        Version matchedVersion = null;
+
+        if (!snapshots) {
+            for (Version v : versions) {
+                if (!v.toString().toUpperCase().contains("SNAPSHOT")) {
+                    matchedVersion = v;
+                    break;
+                }
+            }
+
+            if (matchedVersion == null) {
+                matchedVersion = rangeResult.getHighestVersion();
+                if (matchedVersion != null) {
+                    getLog().warn("didn't find non-snapshot version for " + artifactName +
+                        ", using snapshot version: " + matchedVersion);
+                }
+            }
+        } else {
+            matchedVersion = rangeResult.getHighestVersion();
+        }
+
+        if (matchedVersion == null) {
+            throw new MojoFailureException("didn't find matching version for " + artifactName);
+        }
+
+        version = matchedVersion.toString();
+
+        getLog().info("found the latest version for " + artifact +": " + version);
+
+        if (versionCacheTtl > 0) {
+            try {
+                versionCache.put(artifactName, snapshots, declaredRepositories, version);
+            } catch (IOException e) {
+                getLog().warn("could not update version cache: " + e);
+            }
+        }
+
+        return version;
+    }
+
+    /**
+     * A directory for plugin's caches inside of the local repository.
+     */
+    protected File getCacheDir() {
+        return new File(localRepository, ".installation");
+    }
+
+    /**
+     * Resolves the artifact with its dependencies. Results for fixed release versions are cached.
+     *
+     * @return resolved artifacts, the root artifact goes first
+     */
+    protected List<ArtifactResult> resolveDependencies(Artifact artifact) throws ArtifactResolutionException {
+        GraphCache graphCache = new GraphCache(new File(getCacheDir(), "graphs"));
+
+        boolean cacheable = GraphCache.isCacheable(artifact);
+
+        String key = cacheable ? GraphCache.key(artifact, JavaScopes.COMPILE, declaredRepositories) : null;
+
+        if (cacheable && !refresh) {
+            List<ArtifactResult> cached = graphCache.get(key, session.getLocalRepository());
+
+            if (cached != null) {
+                getLog().info("using cached dependencies of " + artifact);
+                timings.mark("graphCacheHit");
+                return cached;
+            }
+        }
+
+        List<ArtifactResult> results = addToStore(resolveArtifact(artifact).getArtifactResults());
+
+        if (cacheable && GraphCache.isCacheable(results)) {
+            try {
+                graphCache.put(key, results);
+            } catch (IOException e) {
+                getLog().warn("could not cache dependencies of " + artifact + ": " + e);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Resolves several artifacts over the shared session. Dependency graphs are collected concurrently, then all of
+     * their artifacts are resolved in a single batch, so shared dependencies are resolved and downloaded once. A root
+     * which can't be collected or resolved doesn't fail the others.
+     *
+     * @param failures receives errors of roots which failed
+     * @return resolved artifacts for each root which didn't fail, the root artifact goes first
+     */
+    protected Map<Artifact, List<ArtifactResult>> resolveDependencies(List<Artifact> roots, int threads,
+                                                                      Map<Artifact, Exception> failures)
+        throws InterruptedException {
+        GraphCache graphCache = new GraphCache(new File(getCacheDir(), "graphs"));
+
+        final DependencyFilter classpathFilter = DependencyFilterUtils.classpathFilter(JavaScopes.COMPILE);
+
+        Map<Artifact, List<ArtifactResult>> results = new LinkedHashMap<Artifact, List<ArtifactResult>>();
+        Map<Artifact, Future<List<DependencyNode>>> collected = new LinkedHashMap<Artifact, Future<List<DependencyNode>>>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+
+        try {
+            for (final Artifact root : roots) {
+                if (GraphCache.isCacheable(root) && !refresh) {
+                    List<ArtifactResult> cached = graphCache.get(GraphCache.key(root, JavaScopes.COMPILE, declaredRepositories),
+                        session.getLocalRepository());
+
+                    if (cached != null) {
+                        getLog().info("using cached dependencies of " + root);
+                        timings.mark("graphCacheHit");
+                        results.put(root, cached);
+                        continue;
+                    }
+                }
+
+                results.put(root, null);
+
+                collected.put(root, executor.submit(new Callable<List<DependencyNode>>() {
+                    @Override
+                    public List<DependencyNode> call() throws Exception {
+                        getLog().info("collecting dependencies of " + root);
+
+                        long start = System.nanoTime();
 
-            if (!snapshots) {
-                for (Version version : versions) {
-                    if (!version.toString().toUpperCase().contains("SNAPSHOT")) {
-                        matchedVersion = version;
-                        break;
+                        CollectRequest collectRequest = new CollectRequest();
+                        collectRequest.setRoot(new Dependency(root, JavaScopes.COMPILE));
+                        collectRequest.setRepositories(repositories);
+
+                        DependencyNode rootNode = system.collectDependencies(session, collectRequest).getRoot();
+
+                        timings.record("collect", start);
+
+                        PreorderNodeListGenerator nodeList = new PreorderNodeListGenerator();
+
+                        rootNode.accept(new TreeDependencyVisitor(new FilteringDependencyVisitor(nodeList, classpathFilter)));
+
+                        return nodeList.getNodes();
                     }
+                }));
+            }
+
+            Map<String, ArtifactRequest> requests = new LinkedHashMap<String, ArtifactRequest>();
+
+            Map<Artifact, List<String>> keysByRoot = new LinkedHashMap<Artifact, List<String>>();
+
+            Set<Artifact> uncacheableRoots = new HashSet<Artifact>();
+
+            for (Map.Entry<Artifact, Future<List<DependencyNode>>> entry : collected.entrySet()) {
+                List<String> keys = new ArrayList<String>();
+
+                List<DependencyNode> nodes;
+
+                try {
+                    nodes = getCollected(entry.getValue());
+                } catch (DependencyCollectionException e) {
+                    failures.put(entry.getKey(), e);
+                    results.remove(entry.getKey());
+                    continue;
+                } catch (RuntimeException e) {
+                    failures.put(entry.getKey(), e);
+                    results.remove(entry.getKey());
+                    continue;
                 }
 
-                if (matchedVersion == null) {
-                    matchedVersion = rangeResult.getHighestVersion();
-                    if (matchedVersion != null) {
-                        getLog().warn("didn't find non-snapshot version for " + artifactName +
-                            ", using snapshot version: " + matchedVersion);
+                for (DependencyNode node : nodes) {
+                    if (!GraphCache.isCacheable(node)) {
+                        uncacheableRoots.add(entry.getKey());
+                    }
+
+                    String key = node.getArtifact().toString();
+
+                    keys.add(key);
+
+                    if (!requests.containsKey(key)) {
+                        requests.put(key, new ArtifactRequest(node));
                     }
                 }
-            } else {
-                matchedVersion = rangeResult.getHighestVersion();
+
+                keysByRoot.put(entry.getKey(), keys);
             }
 
-            if (matchedVersion == null) {
-                throw new MojoFailureException("didn't find matching version for " + artifactName);
+            if (!requests.isEmpty()) {
+                getLog().info("resolving " + requests.size() + " artifacts for " + collected.size() + " roots");
+            }
+
+            Map<String, ArtifactResult> resolved = new HashMap<String, ArtifactResult>();
+
+            long start = System.nanoTime();
+
+            List<ArtifactResult> downloaded;
+
+            try {
+                downloaded = downloadArtifacts(requests.values());
+            } catch (ArtifactResolutionException e) {
+                // failures are assigned to their roots below
+                downloaded = e.getResults();
+            }
+
+            for (ArtifactResult result : addToStore(downloaded)) {
+                resolved.put(result.getRequest().getArtifact().toString(), result);
             }
 
-            artifactVersion = matchedVersion.toString();
+            timings.record("download", start);
+
+            downloadsFinished();
+
+            for (Map.Entry<Artifact, List<String>> entry : keysByRoot.entrySet()) {
+                List<ArtifactResult> rootResults = new ArrayList<ArtifactResult>();
+                List<ArtifactResult> unresolved = new ArrayList<ArtifactResult>();
+
+                for (String key : entry.getValue()) {
+                    ArtifactResult result = resolved.get(key);
+
+                    rootResults.add(result);
 
-            getLog().info("found the latest version for " + artifact +": " + artifactVersion);
+                    if (!result.isResolved()) {
+                        unresolved.add(result);
+                    }
+                }
+
+                if (!unresolved.isEmpty()) {
+                    failures.put(entry.getKey(), new ArtifactResolutionException(unresolved));
+                    results.remove(entry.getKey());
+                    continue;
+                }
+
+                results.put(entry.getKey(), rootResults);
+
+                if (GraphCache.isCacheable(entry.getKey()) && !uncacheableRoots.contains(entry.getKey()) &&
+                    GraphCache.isCacheable(rootResults)) {
+                    try {
+                        graphCache.put(GraphCache.key(entry.getKey(), JavaScopes.COMPILE, declaredRepositories), rootResults);
+                    } catch (IOException e) {
+                        getLog().warn("could not cache dependencies of " + entry.getKey() + ": " + e);
+                    }
+                }
+            }
+
+            return results;
+        } finally {
+            executor.shutdownNow();
         }
+    }
 
-        artifactName += ":" + artifactVersion;
+    /**
+     * Prints a one-line transfer summary when the console is not a terminal and progress is reported, records
+     * digests of downloaded jars.
+     */
+    private void downloadsFinished() {
+        if (transferListener != null) {
+            transferListener.printSummary();
+        }
+
+        if (streamingDigests.record(digestIndex) > 0) {
+            try {
+                digestIndex.store();
+            } catch (IOException e) {
+                getLog().warn("could not store digests: " + e);
+            }
+        }
+    }
+
+    private static List<DependencyNode> getCollected(Future<List<DependencyNode>> future)
+        throws DependencyCollectionException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DependencyCollectionException) {
+                throw (DependencyCollectionException) e.getCause();
+            }
+
+            throw Exceptions.runtime(e.getCause());
+        }
     }
 
     protected DependencyResult resolveArtifact(Artifact artifact) throws ArtifactResolutionException {
@@ -170,12 +607,183 @@ public abstract class AbstractExecMojo extends AbstractMojo {
             collectRequest.setRoot(new Dependency(artifact, JavaScopes.COMPILE));
             collectRequest.setRepositories(repositories);
 
-            DependencyRequest dependencyRequest = new DependencyRequest( collectRequest, classpathFilter );
+            // collecting and downloading are done separately to time them
+            long start = System.nanoTime();
+
+            DependencyNode rootNode = system.collectDependencies(session, collectRequest).getRoot();
+
+            timings.record("collect", start);
+
+            DependencyRequest dependencyRequest = new DependencyRequest(rootNode, classpathFilter);
+
+            start = System.nanoTime();
+
+            DependencyResult result;
+
+            if (hedgeRequests) {
+                PreorderNodeListGenerator nodeList = new PreorderNodeListGenerator();
+
+                rootNode.accept(new TreeDependencyVisitor(new FilteringDependencyVisitor(nodeList, classpathFilter)));
+
+                List<ArtifactRequest> requests = new ArrayList<ArtifactRequest>();
+
+                for (DependencyNode node : nodeList.getNodes()) {
+                    requests.add(new ArtifactRequest(node));
+                }
+
+                result = new DependencyResult(dependencyRequest)
+                    .setRoot(rootNode)
+                    .setArtifactResults(downloadArtifacts(requests));
+            } else {
+                result = system.resolveDependencies(session, dependencyRequest);
+            }
+
+            timings.record("download", start);
 
-            return system.resolveDependencies(session, dependencyRequest);
+            downloadsFinished();
+
+            return result;
+        } catch (DependencyCollectionException e) {
+            throw Exceptions.runtime(e);
         } catch (DependencyResolutionException e) {
             throw Exceptions.runtime(e);
+        } catch (InterruptedException e) {
+            throw Exceptions.runtime(e);
+        }
+    }
+
+    /**
+     * Downloads artifacts in one batch or, with <code>-DhedgeRequests</code>, with hedged requests.
+     */
+    private List<ArtifactResult> downloadArtifacts(Collection<ArtifactRequest> requests)
+        throws ArtifactResolutionException, InterruptedException {
+        if (!hedgeRequests || repositories.size() < 2) {
+            return system.resolveArtifacts(session, requests);
+        }
+
+        long delay = repositoryProfile.responsePercentile(repositories.get(0), hedgePercentile);
+
+        if (delay < 0) {
+            delay = hedgeDelay;
+        }
+
+        return new HedgedResolver(system, session, downloadThreads, delay, getLog()).resolveArtifacts(requests);
+    }
+
+    /**
+     * Adds resolved artifacts to the store when it's enabled and points their results to the stored files.
+     */
+    private List<ArtifactResult> addToStore(List<ArtifactResult> results) {
+        if (artifactStore == null) return results;
+
+        long start = System.nanoTime();
+
+        int added = 0;
+
+        for (ArtifactResult result : results) {
+            Artifact artifact = result.getArtifact();
+
+            if (artifact == null || artifact.getFile() == null || artifactStore.contains(artifact.getFile())) continue;
+
+            try {
+                File stored = artifactStore.add(artifact);
+
+                if (!stored.equals(artifact.getFile())) {
+                    result.setArtifact(artifact.setFile(stored));
+                    added++;
+                }
+            } catch (IOException e) {
+                getLog().warn("could not add " + artifact + " to the store: " + e);
+            }
+        }
+
+        if (added > 0) {
+            getLog().info("added " + added + " artifacts to the store at " + artifactStore.getRoot());
+        }
+
+        //digests of artifacts checked in the store are kept as well
+        try {
+            digestIndex.store();
+        } catch (IOException e) {
+            getLog().warn("could not store digests: " + e);
+        }
+
+        timings.record("store", start);
+
+        return results;
+    }
+
+    private static List<String> repositoryIds(List<RemoteRepository> repositories) {
+        List<String> ids = new ArrayList<String>(repositories.size());
+
+        for (RemoteRepository repository : repositories) {
+            ids.add(repository.getId());
+        }
+
+        return ids;
+    }
+
+    /**
+     * Writes the timings report when it's requested with <code>-Dinstallation.timings=path</code>.
+     */
+    protected void writeTimings(String goal) {
+        if (timingsFile == null) return;
+
+        timings.put("goal", goal);
+
+        if (artifactName != null) {
+            timings.put("artifact", artifactName);
         }
+
+        try {
+            timings.write(timingsFile);
+            getLog().info("timings written to " + timingsFile.getAbsolutePath());
+        } catch (IOException e) {
+            getLog().warn("could not write timings to " + timingsFile + ": " + e);
+        }
+    }
+
+    /**
+     * Logs download statistics per repository and writes them when requested with
+     * <code>-Dinstallation.repositoryMetrics=path</code>.
+     */
+    protected void reportRepositoryMetrics() {
+        if (repositoryMetrics.isEmpty()) return;
+
+        repositoryMetrics.logSummary(getLog(), repositories);
+
+        if (repositoryProfile != null) {
+            repositoryProfile.update(repositoryMetrics);
+
+            try {
+                repositoryProfile.store();
+            } catch (IOException e) {
+                getLog().warn("could not store the repository profile: " + e);
+            }
+        }
+
+        if (repositoryMetricsFile == null) return;
+
+        try {
+            repositoryMetrics.write(repositoryMetricsFile);
+            getLog().info("repository metrics written to " + repositoryMetricsFile.getAbsolutePath());
+        } catch (IOException e) {
+            getLog().warn("could not write repository metrics to " + repositoryMetricsFile + ": " + e);
+        }
+    }
+
+    protected static List<String> splitJvmOptions(String options) throws MojoExecutionException {
+        if (options == null || options.trim().isEmpty()) return Collections.emptyList();
+
+        try {
+            return Arrays.asList(CommandLineUtils.translateCommandline(options));
+        } catch (Exception e) {
+            throw new MojoExecutionException("could not parse JVM options: " + options + ", " + e);
+        }
+    }
+
+    protected static File javaExePath() {
+        return new File(SystemUtils.getJavaHome(), "bin/" + (SystemUtils.IS_OS_UNIX ? "java" : "java.exe"));
     }
 
     protected String[] parseArgs() throws MojoExecutionException {
@@ -0,0 +1,250 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.repository.WorkspaceReader;
+import org.eclipse.aether.repository.WorkspaceRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A host-wide store of release artifacts shared by users who keep their own local repositories, enabled with
+ * <code>-Dstore=/path</code>.
+ *
+ * Content is stored once per digest in <code>sha256/ab/abcdef...</code>. The <code>repository</code> directory has
+ * the Maven layout and its files are hard links to the content, so the store is served as a workspace to the
+ * resolver: an artifact stored by any user is neither downloaded nor copied again, and installed classpaths point into
+ * the store. When a user's local repository is on the same file system, its copy is replaced by a hard link as well,
+ * so all copies share one inode and their pages in the page cache.
+ *
+ * The store is written by the user who created it, e.g. root or a dedicated account: directories are
+ * <code>rwxr-xr-x</code> and content files are read-only copies owned by that user. Other users read from the store,
+ * but don't add to it. A file in <code>repository</code> is served only when it is the content of its own digest.
+ *
+ * Snapshots are never stored, because their content changes under the same coordinates.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class ArtifactStore implements WorkspaceReader {
+    private final File root;
+    private final DigestIndex digestIndex;
+    private final Log log;
+
+    private final WorkspaceRepository repository = new WorkspaceRepository("installation-store");
+
+    public ArtifactStore(File root, DigestIndex digestIndex, Log log) {
+        this.root = root.getAbsoluteFile();
+        this.digestIndex = digestIndex;
+        this.log = log;
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    @Override
+    public WorkspaceRepository getRepository() {
+        return repository;
+    }
+
+    @Override
+    public File findArtifact(Artifact artifact) {
+        if (artifact.isSnapshot()) return null;
+
+        File file = new File(root, "repository/" + path(artifact));
+
+        if (!file.isFile()) return null;
+
+        try {
+            if (isContent(file, digestIndex.digests(file).sha256)) return file;
+        } catch (IOException e) {
+            log.debug("could not read " + file + ": " + e);
+            return null;
+        }
+
+        log.warn(file + " doesn't match its content in the store, ignoring it");
+
+        return null;
+    }
+
+    /**
+     * @return true when the file is the stored content with this digest
+     */
+    private boolean isContent(File file, String sha256) throws IOException {
+        File content = contentFile(sha256);
+
+        return content.isFile() && Files.isSameFile(file.toPath(), content.toPath());
+    }
+
+    private File contentFile(String sha256) {
+        return new File(root, "sha256/" + sha256.substring(0, 2) + "/" + sha256);
+    }
+
+    /**
+     * Versions come from repository metadata, the store only short-cuts files.
+     */
+    @Override
+    public List<String> findVersions(Artifact artifact) {
+        return Collections.emptyList();
+    }
+
+    public boolean contains(File file) {
+        return file.getAbsolutePath().startsWith(root.getPath() + File.separator);
+    }
+
+    /**
+     * Adds a resolved artifact and its POM to the store and links the user's copies to the stored content.
+     *
+     * @return the stored artifact file or the artifact's file when it can't be stored
+     */
+    public File add(Artifact artifact) throws IOException {
+        File file = artifact.getFile();
+
+        if (artifact.isSnapshot() || file == null || !file.isFile() || contains(file)) return file;
+
+        if (root.isDirectory() && !Files.isWritable(root.toPath())) {
+            //read-only for this user
+            return file;
+        }
+
+        File pom = new File(file.getParentFile(), artifact.getArtifactId() + "-" + artifact.getVersion() + ".pom");
+
+        if (pom.isFile()) {
+            add(pom, new File(root, "repository/" + path(artifact.getGroupId(), artifact.getArtifactId(),
+                artifact.getBaseVersion(), pom.getName())));
+        }
+
+        return add(file, new File(root, "repository/" + path(artifact)));
+    }
+
+    private File add(File file, File stored) throws IOException {
+        DigestIndex.Digests digests = digestIndex.digests(file);
+
+        String sha256 = digests.sha256;
+
+        File content = contentFile(sha256);
+
+        if (!content.isFile()) {
+            mkdirs(content.getParentFile());
+
+            //a copy, so the content belongs to the store and not to the user's local repository
+            copy(file, content);
+
+            log.debug("stored " + file + " as " + content);
+        } else if (!digestIndex.digests(content).sha256.equals(sha256)) {
+            log.warn("not storing " + file + ", stored content " + content + " doesn't match its digest");
+            return file;
+        }
+
+        if (!stored.isFile()) {
+            mkdirs(stored.getParentFile());
+            link(stored, content);
+        }
+
+        if (!isContent(stored, sha256) && !replaceWithLink(stored, content)) {
+            log.warn("not storing " + file + ", " + stored + " is not the stored content");
+            return file;
+        }
+
+        if (!Files.isSameFile(file.toPath(), content.toPath()) && replaceWithLink(file, content)) {
+            digestIndex.put(file, digests);
+        }
+
+        return stored;
+    }
+
+    /**
+     * Atomically replaces a user's copy with a hard link to the stored content.
+     */
+    private boolean replaceWithLink(File file, File content) {
+        Path temp = new File(file.getParentFile(), file.getName() + ".link.tmp").toPath();
+
+        try {
+            Files.deleteIfExists(temp);
+            Files.createLink(temp, content.toPath());
+            Files.move(temp, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            return true;
+        } catch (Exception e) {
+            //another file system or no permission to link
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+            }
+
+            return false;
+        }
+    }
+
+    private static boolean link(File link, File existing) throws IOException {
+        try {
+            Files.createLink(link.toPath(), existing.toPath());
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            //stored concurrently
+            return true;
+        } catch (IOException e) {
+            return false;
+        } catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Copies via a temp file and renames it, so readers never see a partial file. Copies are read-only.
+     */
+    private static void copy(File from, File to) throws IOException {
+        File temp = File.createTempFile(to.getName(), ".tmp", to.getParentFile());
+
+        try {
+            Files.copy(from.toPath(), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            temp.setReadOnly();
+            temp.setReadable(true, false);
+            Files.move(temp.toPath(), to.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            //stored concurrently
+        } finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Store directories are readable by all users of the host and writable by the store's owner only.
+     */
+    private void mkdirs(File dir) {
+        if (dir.isDirectory()) return;
+
+        mkdirs(dir.getParentFile());
+
+        if (dir.mkdir()) {
+            try {
+                Files.setPosixFilePermissions(dir.toPath(), PosixFilePermissions.fromString("rwxr-xr-x"));
+            } catch (Exception e) {
+                //not a posix file system
+                dir.setReadable(true, false);
+                dir.setExecutable(true, false);
+            }
+        }
+    }
+
+    static String path(Artifact artifact) {
+        StringBuilder name = new StringBuilder(artifact.getArtifactId()).append('-').append(artifact.getVersion());
+
+        if (artifact.getClassifier().length() > 0) {
+            name.append('-').append(artifact.getClassifier());
+        }
+
+        name.append('.').append(artifact.getExtension());
+
+        return path(artifact.getGroupId(), artifact.getArtifactId(), artifact.getBaseVersion(), name.toString());
+    }
+
+    private static String path(String groupId, String artifactId, String baseVersion, String fileName) {
+        return groupId.replace('.', '/') + "/" + artifactId + "/" + baseVersion + "/" + fileName;
+    }
+}
@@ -18,6 +18,7 @@ import org.eclipse.aether.RepositorySystem;
 import org.eclipse.aether.internal.impl.DefaultRepositorySystem;
 import org.eclipse.aether.repository.LocalRepository;
 import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.TransferListener;
 
 import java.io.File;
 
@@ -59,4 +60,30 @@ public class Booter {
 
         return session;
     }
+
+    /**
+     * Creates a session with parallel downloads.
+     *
+     * @param downloadThreads  number of concurrent downloads from a single repository, each repository connector gets
+     *                         its own pool, so this is also a limit of connections per repository
+     * @param metadataThreads  number of concurrent metadata downloads
+     * @param transferListener a listener to report the progress to, nullable
+     */
+    public static DefaultRepositorySystemSession newSession(RepositorySystem system, File repositoryDir,
+                                                            int downloadThreads, int metadataThreads,
+                                                            TransferListener transferListener) {
+        DefaultRepositorySystemSession session = newSession(system, repositoryDir);
+
+        // the basic connector is used by Maven 3.2+, the wagon one by earlier versions
+        session.setConfigProperty("aether.connector.basic.threads", downloadThreads);
+        session.setConfigProperty("aether.connector.wagon.threads", downloadThreads);
+        session.setConfigProperty("maven.artifact.threads", downloadThreads);
+        session.setConfigProperty("aether.metadataResolver.threads", metadataThreads);
+
+        if (transferListener != null) {
+            session.setTransferListener(transferListener);
+        }
+
+        return session;
+    }
 }
@@ -0,0 +1,135 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.SystemUtils.IS_OS_UNIX;
+
+/**
+ * Support for dynamic class-data-sharing (AppCDS) archives of installed shortcuts, JDK 13+.
+ *
+ * An archive is dumped by a training run at install time. On Unix the shortcut re-dumps the archive on its next
+ * launch when the classpath file is newer than the archive, i.e. after a reinstall. Only one launch dumps: it takes
+ * a lock directory, writes the archive to a temp file and renames it when the app exits, concurrent launches run
+ * with the old archive. Nothing is dumped when the user can't write to the archive's directory.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class ClassDataSharing {
+    /**
+     * Silences CDS warnings, i.e. when the archive doesn't match the classpath or can't be written by the current user.
+     */
+    private static final String QUIET = "-Xshare:auto -Xlog:cds=off -Xlog:cds+dynamic=off";
+
+    public static boolean isSupported() {
+        return Runner.javaVersion() >= 13;
+    }
+
+    public static File archiveFile(File installToDir, String shortCut) {
+        return new File(installToDir, shortCut + ".jsa");
+    }
+
+    /**
+     * @param appLaunchingString the launch command without <code>exec</code>, it uses the <code>cds</code> variable
+     * @return script lines which set the <code>cds</code> variable to use the archive or re-dump it and launch the
+     * app, Unix only
+     */
+    public static String dumpScript(File archive, File classPathFile, String appLaunchingString) {
+        if (!IS_OS_UNIX) return "";
+
+        return MessageFormat.format("" +
+            "cds=-XX:SharedArchiveFile={0}\n" +
+            "if [ \"{1}\" -nt \"{0}\" ] && [ -w \"{2}\" ] && mkdir \"{0}.lock\" 2> /dev/null ; then\n" +
+            "    trap ''rm -f \"{0}.$$\" ; rmdir \"{0}.lock\"'' EXIT\n" +
+            "    trap ''exit 130'' INT TERM\n" +
+            "    cds=-XX:ArchiveClassesAtExit={0}.$$\n" +
+            "    {3}\n" +
+            "    status=$?\n" +
+            "    [ -s \"{0}.$$\" ] && mv -f \"{0}.$$\" \"{0}\"\n" +
+            "    exit $status\n" +
+            "fi\n" +
+            "\n",
+            archive.getAbsolutePath(), classPathFile.getAbsolutePath(), archive.getParentFile().getAbsolutePath(),
+            appLaunchingString);
+    }
+
+    /**
+     * @return JVM options for the app launching string
+     */
+    public static String javaOptions(File archive) {
+        if (IS_OS_UNIX) {
+            return "$cds " + QUIET;
+        }
+
+        return "-XX:SharedArchiveFile=\"" + archive.getAbsolutePath() + "\" " + QUIET;
+    }
+
+    /**
+     * Dumps an archive by running the shortcut's main class once with shortcut's JVM options. Stdin of the training
+     * process is closed, so apps waiting for input will exit. The process is killed after <code>timeoutMs</code>.
+     *
+     * @return true if the archive has been created
+     */
+    public static boolean train(File javaExe, List<String> jvmOptions, File runnerJar, File classPathFile, String className,
+                                String[] trainingArgs, File archive, long timeoutMs, final Log log) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+
+        command.add(javaExe.getAbsolutePath());
+        command.addAll(jvmOptions);
+
+        command.addAll(Arrays.asList(
+            "-XX:ArchiveClassesAtExit=" + archive.getAbsolutePath(),
+            "-Xlog:cds=off", "-Xlog:cds+dynamic=off",
+            "-cp", runnerJar.getAbsolutePath(),
+            Runner.class.getName(),
+            classPathFile.getAbsolutePath(),
+            className
+        ));
+
+        if (trainingArgs != null) {
+            command.addAll(Arrays.asList(trainingArgs));
+        }
+
+        archive.delete();
+
+        log.info("training run for the CDS archive " + archive.getName() + ": " + className);
+
+        final Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        process.getOutputStream().close();
+
+        Thread drainer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        log.debug("[cds] " + line);
+                    }
+                } catch (IOException e) {
+                    //process is gone
+                }
+            }
+        }, "cds-training-output");
+
+        drainer.setDaemon(true);
+        drainer.start();
+
+        if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+            log.warn("training run for " + className + " didn't finish in " + timeoutMs + "ms, stopping it");
+            process.destroy();
+            process.waitFor();
+        }
+
+        return archive.isFile();
+    }
+}
@@ -0,0 +1,195 @@
+package com.chaschev.install;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * A binary companion of a classpath file. It keeps the classpath URLs in their final form, so that
+ * {@link Runner} can load them with a single read, without line parsing and <code>File.toURI()</code> for each entry.
+ *
+ * Index layout: magic, version, CRC32 of the payload, then the payload: length and mtime of the text classpath
+ * file, user home the URLs were resolved for, and a list of (url, size, mtime) entries.
+ *
+ * The index is used only when it matches the text classpath file, the current user's home and the size and mtime of
+ * each entry, otherwise {@link #read(File)} returns null and the text file should be used.
+ *
+ * Only JDK classes are used here, because the Runner is launched with its own jar on the classpath.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class ClasspathIndex {
+    public static final String EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x49434958;
+    private static final int VERSION = 1;
+
+    public static class Entry {
+        public final String url;
+        public final long size;
+        public final long lastModified;
+
+        public Entry(String url, long size, long lastModified) {
+            this.url = url;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final String userHome;
+
+    private ClasspathIndex(String userHome, List<Entry> entries) {
+        this.userHome = userHome;
+        this.entries = entries;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public String getUserHome() {
+        return userHome;
+    }
+
+    public static File indexFile(File classpathFile) {
+        return new File(classpathFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Writes an index for an already written classpath file.
+     *
+     * @param files resolved classpath entries, in classpath order
+     */
+    public static File write(File classpathFile, List<File> files, String userHome) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128 * (files.size() + 1));
+        DataOutputStream out = new DataOutputStream(payload);
+
+        out.writeLong(classpathFile.length());
+        out.writeLong(classpathFile.lastModified());
+        out.writeUTF(userHome);
+        out.writeInt(files.size());
+
+        for (File file : files) {
+            out.writeUTF(file.toURI().toURL().toString());
+            out.writeLong(file.length());
+            out.writeLong(file.lastModified());
+        }
+
+        out.flush();
+
+        byte[] bytes = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        File indexFile = indexFile(classpathFile);
+
+        DataOutputStream fileOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+
+        try {
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(VERSION);
+            fileOut.writeLong(crc.getValue());
+            fileOut.write(bytes);
+        } finally {
+            fileOut.close();
+        }
+
+        return indexFile;
+    }
+
+    /**
+     * @return the index or null when it's missing, corrupt, stale, was resolved for a different user or one of its
+     * entries has changed
+     */
+    public static ClasspathIndex read(File classpathFile) {
+        File indexFile = indexFile(classpathFile);
+
+        if (!indexFile.isFile()) return null;
+
+        try {
+            byte[] bytes = readFully(indexFile);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            long expectedCrc = in.readLong();
+
+            int payloadOffset = 16;
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, payloadOffset, bytes.length - payloadOffset);
+
+            if (crc.getValue() != expectedCrc) return null;
+
+            if (in.readLong() != classpathFile.length() || in.readLong() != classpathFile.lastModified()) {
+                return null;
+            }
+
+            String userHome = in.readUTF();
+
+            if (!userHome.equals(System.getProperty("user.home"))) return null;
+
+            int count = in.readInt();
+
+            List<Entry> entries = new ArrayList<Entry>(count);
+
+            for (int i = 0; i < count; i++) {
+                Entry entry = new Entry(in.readUTF(), in.readLong(), in.readLong());
+
+                if (!isUnchanged(entry.url, entry.size, entry.lastModified)) return null;
+
+                entries.add(entry);
+            }
+
+            return new ClasspathIndex(userHome, entries);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return true when the file of a file: URL still has the recorded size and mtime
+     */
+    static boolean isUnchanged(String url, long size, long lastModified) {
+        File file;
+
+        try {
+            file = new File(new URI(url));
+        } catch (URISyntaxException e) {
+            return false;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    public List<URL> toURLs() throws IOException {
+        List<URL> urls = new ArrayList<URL>(entries.size());
+
+        for (Entry entry : entries) {
+            urls.add(new URL(entry.url));
+        }
+
+        return urls;
+    }
+
+    static byte[] readFully(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            in.readFully(bytes);
+            return bytes;
+        } finally {
+            in.close();
+        }
+    }
+}
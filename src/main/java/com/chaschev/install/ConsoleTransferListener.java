@@ -21,46 +21,123 @@ import java.text.DecimalFormatSymbols;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * A simplistic transfer listener that logs uploads/downloads to the console.
+ * A transfer listener that reports uploads/downloads to the console.
+ *
+ * Progress of all transfers is aggregated into one status line which is redrawn at most once per refresh interval.
+ * Progress events only update atomic counters, so parallel downloads don't wait for each other or for the console.
+ *
+ * When the console is not a terminal, i.e. in CI logs, nothing is printed per transfer and
+ * {@link #printSummary()} prints one line for all of them.
  */
 public class ConsoleTransferListener
     extends AbstractTransferListener {
 
-    private PrintStream out;
+    public static final long DEFAULT_REFRESH_INTERVAL_MS = 250;
+
+    private final PrintStream out;
+
+    private final boolean interactive;
+
+    private final long refreshIntervalNanos;
+
+    /**
+     * Content lengths of started transfers.
+     */
+    private final Map<TransferResource, Long> active = new ConcurrentHashMap<TransferResource, Long>();
+
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final AtomicLong activeLength = new AtomicLong();
+    private final AtomicLong activeTransferred = new AtomicLong();
+
+    private final AtomicLong transferred = new AtomicLong();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicLong firstStart = new AtomicLong();
 
-    private Map<TransferResource, Long> downloads = new ConcurrentHashMap<TransferResource, Long>();
+    private final AtomicLong nextRender = new AtomicLong();
 
     private int lastLength;
 
     public ConsoleTransferListener() {
-        this(null);
+        this(null, System.console() != null, DEFAULT_REFRESH_INTERVAL_MS);
     }
 
     public ConsoleTransferListener(PrintStream out) {
+        this(out, System.console() != null, DEFAULT_REFRESH_INTERVAL_MS);
+    }
+
+    /**
+     * @param interactive render a status line and per-transfer messages, otherwise only a summary is printed
+     */
+    public ConsoleTransferListener(PrintStream out, boolean interactive, long refreshIntervalMs) {
         this.out = (out != null) ? out : System.out;
+        this.interactive = interactive;
+        this.refreshIntervalNanos = refreshIntervalMs * 1000000L;
     }
 
     @Override
     public void transferInitiated(TransferEvent event) {
+        firstStart.compareAndSet(0, System.currentTimeMillis());
+
+        if (!interactive) return;
+
         String message = event.getRequestType() == TransferEvent.RequestType.PUT ? "Uploading" : "Downloading";
 
-        out.println(message + ": " + event.getResource().getRepositoryUrl() + event.getResource().getResourceName());
+        print(message + ": " + event.getResource().getRepositoryUrl() + event.getResource().getResourceName());
+    }
+
+    @Override
+    public void transferStarted(TransferEvent event) {
+        long length = event.getResource().getContentLength();
+
+        if (active.put(event.getResource(), length) == null) {
+            activeCount.incrementAndGet();
+
+            if (length > 0) {
+                activeLength.addAndGet(length);
+            }
+        }
     }
 
     @Override
     public void transferProgressed(TransferEvent event) {
-        TransferResource resource = event.getResource();
-        downloads.put(resource, Long.valueOf(event.getTransferredBytes()));
+        int length = event.getDataLength();
+
+        transferred.addAndGet(length);
+        activeTransferred.addAndGet(length);
+
+        if (!interactive) return;
+
+        long now = System.nanoTime();
+        long next = nextRender.get();
+
+        // only one of the concurrent transfers renders, once per interval
+        if (now - next >= 0 && nextRender.compareAndSet(next, now + refreshIntervalNanos)) {
+            renderStatus();
+        }
+    }
+
+    private synchronized void renderStatus() {
+        StringBuilder buffer = new StringBuilder(80);
+
+        long total = activeLength.get();
+        long complete = activeTransferred.get();
+
+        buffer.append(activeCount.get()).append(" transfers: ");
 
-        StringBuilder buffer = new StringBuilder(64);
+        if (total > 0) {
+            buffer.append(toKB(complete)).append('/').append(toKB(total)).append(" KB");
+        } else {
+            buffer.append(toKB(complete)).append(" KB");
+        }
 
-        for (Map.Entry<TransferResource, Long> entry : downloads.entrySet()) {
-            long total = entry.getKey().getContentLength();
-            long complete = entry.getValue().longValue();
+        long duration = System.currentTimeMillis() - firstStart.get();
 
-            buffer.append(getStatus(complete, total)).append("  ");
+        if (duration > 0) {
+            buffer.append(" at ").append(formatKbPerSec(transferred.get(), duration)).append(" KB/sec");
         }
 
         int pad = lastLength - buffer.length();
@@ -71,16 +148,9 @@ public class ConsoleTransferListener
         out.print(buffer);
     }
 
-    private String getStatus(long complete, long total) {
-        if (total >= 1024) {
-            return toKB(complete) + "/" + toKB(total) + " KB ";
-        } else if (total >= 0) {
-            return complete + "/" + total + " B ";
-        } else if (complete >= 1024) {
-            return toKB(complete) + " KB ";
-        } else {
-            return complete + " B ";
-        }
+    private static String formatKbPerSec(long bytes, long durationMs) {
+        DecimalFormat format = new DecimalFormat("0.0", new DecimalFormatSymbols(Locale.ENGLISH));
+        return format.format((bytes / 1024.0) / (durationMs / 1000.0));
     }
 
     private void pad(StringBuilder buffer, int spaces) {
@@ -96,6 +166,10 @@ public class ConsoleTransferListener
     public void transferSucceeded(TransferEvent event) {
         transferCompleted(event);
 
+        completed.incrementAndGet();
+
+        if (!interactive) return;
+
         TransferResource resource = event.getResource();
         long contentLength = event.getTransferredBytes();
         if (contentLength >= 0) {
@@ -105,14 +179,10 @@ public class ConsoleTransferListener
             String throughput = "";
             long duration = System.currentTimeMillis() - resource.getTransferStartTime();
             if (duration > 0) {
-                long bytes = contentLength - 0;
-                    //resource.getResumeOffset();
-                DecimalFormat format = new DecimalFormat("0.0", new DecimalFormatSymbols(Locale.ENGLISH));
-                double kbPerSec = (bytes / 1024.0) / (duration / 1000.0);
-                throughput = " at " + format.format(kbPerSec) + " KB/sec";
+                throughput = " at " + formatKbPerSec(contentLength, duration) + " KB/sec";
             }
 
-            out.println(type + ": " + resource.getRepositoryUrl() + resource.getResourceName() + " (" + len
+            print(type + ": " + resource.getRepositoryUrl() + resource.getResourceName() + " (" + len
                 + throughput + ")");
         }
     }
@@ -122,21 +192,65 @@ public class ConsoleTransferListener
         transferCompleted(event);
 
         if (!(event.getException() instanceof MetadataNotFoundException)) {
-            event.getException().printStackTrace(out);
+            synchronized (this) {
+                clearStatus();
+                event.getException().printStackTrace(out);
+            }
         }
     }
 
     private void transferCompleted(TransferEvent event) {
-        downloads.remove(event.getResource());
+        Long length = active.remove(event.getResource());
 
-        StringBuilder buffer = new StringBuilder(64);
+        if (length != null) {
+            activeCount.decrementAndGet();
+
+            if (length > 0) {
+                activeLength.addAndGet(-length);
+            }
+
+            activeTransferred.addAndGet(-event.getTransferredBytes());
+        }
+    }
+
+    public void transferCorrupted(TransferEvent event) {
+        synchronized (this) {
+            clearStatus();
+            event.getException().printStackTrace(out);
+        }
+    }
+
+    /**
+     * Prints one line about transfers since the previous summary and resets the counters.
+     * Prints nothing in the interactive mode or when nothing was transferred.
+     */
+    public synchronized void printSummary() {
+        long start = firstStart.getAndSet(0);
+        long bytes = transferred.getAndSet(0);
+        int count = completed.getAndSet(0);
+
+        if (interactive || count == 0) return;
+
+        long duration = Math.max(1, System.currentTimeMillis() - start);
+
+        out.println("Transferred " + count + " files, " + toKB(bytes) + " KB in " + duration + " ms at " +
+            formatKbPerSec(bytes, duration) + " KB/sec");
+    }
+
+    private synchronized void print(String line) {
+        clearStatus();
+        out.println(line);
+    }
+
+    private void clearStatus() {
+        if (lastLength == 0) return;
+
+        StringBuilder buffer = new StringBuilder(lastLength + 1);
         pad(buffer, lastLength);
         buffer.append('\r');
         out.print(buffer);
-    }
 
-    public void transferCorrupted(TransferEvent event) {
-        event.getException().printStackTrace(out);
+        lastLength = 0;
     }
 
     protected long toKB(long bytes) {
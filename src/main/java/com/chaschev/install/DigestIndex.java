@@ -0,0 +1,146 @@
+package com.chaschev.install;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * SHA-1 and SHA-256 digests of files in the local repository, so a jar is hashed once: while it's downloaded, see
+ * {@link StreamingDigests}, or on its first use. Entries are stored as <code>path=length mtime sha1 sha256</code> and
+ * are valid while the length and the modification time of the file don't change.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class DigestIndex {
+    private final File file;
+
+    private final Properties properties;
+
+    private boolean changed;
+
+    public static final class Digests {
+        public final String sha1;
+        public final String sha256;
+
+        public Digests(String sha1, String sha256) {
+            this.sha1 = sha1;
+            this.sha256 = sha256;
+        }
+    }
+
+    public DigestIndex(File file) {
+        this.file = file;
+        this.properties = load(file);
+    }
+
+    /**
+     * @return recorded digests or null when there are none or the file has changed
+     */
+    public synchronized Digests get(File jar) {
+        String value = properties.getProperty(jar.getAbsolutePath());
+
+        if (value == null) return null;
+
+        String[] parts = value.split(" ");
+
+        if (parts.length != 4) return null;
+
+        try {
+            if (Long.parseLong(parts[0]) != jar.length() || Long.parseLong(parts[1]) != jar.lastModified()) return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return new Digests(parts[2], parts[3]);
+    }
+
+    public synchronized void put(File jar, Digests digests) {
+        properties.setProperty(jar.getAbsolutePath(),
+            jar.length() + " " + jar.lastModified() + " " + digests.sha1 + " " + digests.sha256);
+
+        changed = true;
+    }
+
+    /**
+     * @return recorded digests, or computes them with a single read of the file and records them
+     */
+    public Digests digests(File jar) throws IOException {
+        Digests digests = get(jar);
+
+        if (digests != null) return digests;
+
+        digests = compute(jar);
+
+        put(jar, digests);
+
+        return digests;
+    }
+
+    public static Digests compute(File jar) throws IOException {
+        MessageDigest sha1 = newDigest("SHA-1");
+        MessageDigest sha256 = newDigest("SHA-256");
+
+        InputStream in = new FileInputStream(jar);
+
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+
+            while ((n = in.read(buffer)) != -1) {
+                sha1.update(buffer, 0, n);
+                sha256.update(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+
+        return new Digests(toHex(sha1.digest()), toHex(sha256.digest()));
+    }
+
+    public synchronized void store() throws IOException {
+        if (!changed) return;
+
+        VersionCache.store(properties, file);
+
+        changed = false;
+    }
+
+    static MessageDigest newDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            chars[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+
+        return new String(chars);
+    }
+
+    private static Properties load(File file) {
+        Properties properties = new Properties();
+
+        if (!file.isFile()) return properties;
+
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //a broken index is an empty index
+        }
+
+        return properties;
+    }
+}
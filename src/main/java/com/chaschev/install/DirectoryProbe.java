@@ -0,0 +1,84 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks whether directories are writable without writing to them: a stat and an access(2) call per directory,
+ * made in parallel on daemon threads. A directory which doesn't answer within the timeout, i.e. a slow or a dead
+ * network mount, is reported as not writable and its thread is left behind, so it never blocks the install or the
+ * exit of the JVM.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class DirectoryProbe {
+    private final long timeoutMs;
+    private final Log log;
+
+    public DirectoryProbe(long timeoutMs, Log log) {
+        this.timeoutMs = timeoutMs;
+        this.log = log;
+    }
+
+    public boolean isWritable(File dir) {
+        return probe(Collections.singletonList(dir)).contains(dir);
+    }
+
+    /**
+     * @return writable directories, in the order of <code>dirs</code>
+     */
+    public List<File> probe(Collection<File> dirs) {
+        final Map<File, Boolean> results = new ConcurrentHashMap<File, Boolean>();
+
+        final CountDownLatch latch = new CountDownLatch(dirs.size());
+
+        for (final File dir : dirs) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.put(dir, isWritableDirectory(dir.toPath()));
+                    } catch (Exception e) {
+                        results.put(dir, false);
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            }, "probe-" + dir.getName());
+
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        try {
+            latch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<File> writable = new ArrayList<File>();
+
+        for (File dir : dirs) {
+            Boolean result = results.get(dir);
+
+            if (result == null) {
+                log.warn(dir + " didn't respond in " + timeoutMs + "ms, skipping it");
+            } else if (result) {
+                writable.add(dir);
+            }
+        }
+
+        return writable;
+    }
+
+    private static boolean isWritableDirectory(Path dir) {
+        return Files.isDirectory(dir) && Files.isWritable(dir);
+    }
+}
@@ -16,49 +16,221 @@ package com.chaschev.install;
  * limitations under the License.
  */
 
+import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.aether.resolution.ArtifactResult;
-import org.eclipse.aether.resolution.DependencyResult;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.*;
 
 @Mojo(name = "exec", requiresProject = false, threadSafe = true)
 public class ExecMojo extends AbstractExecMojo {
+    /**
+     * Run the class in a new JVM with <code>jvmOptions</code> instead of Maven's JVM.
+     */
+    @Parameter(property = "fork", defaultValue = "false")
+    private boolean fork;
+
+    /**
+     * Offer a virtual-thread-per-task executor to the app in
+     * <code>System.getProperties().get("installation.executor")</code>. JDK 21+.
+     */
+    @Parameter(property = "virtualThreads", defaultValue = "false")
+    private boolean virtualThreads;
+
+    /**
+     * Several classes to run concurrently, separated by semicolon, each followed by its arguments, i.e.
+     * "com.acme.Loader --input in.csv;com.acme.Validator". Dependencies are resolved once.
+     */
+    @Parameter(property = "mains")
+    private String mains;
+
+    /**
+     * Run all mains in one classloader instead of a classloader per main.
+     */
+    @Parameter(property = "sharedClassLoader", defaultValue = "false")
+    private boolean sharedClassLoader;
+
+    private static final class MainResult {
+        final String label;
+        final long durationMs;
+        final Throwable failure;
+        final int exitCode;
+
+        MainResult(String label, long durationMs, Throwable failure, int exitCode) {
+            this.label = label;
+            this.durationMs = durationMs;
+            this.failure = failure;
+            this.exitCode = exitCode;
+        }
+
+        boolean isOk() {
+            return failure == null && exitCode == 0;
+        }
+    }
 
     public void execute() throws MojoExecutionException, MojoFailureException {
-        Preconditions.checkNotNull(className, "you need to set class name with -Dclass=your.ClassName");
+        if (mains == null) {
+            Preconditions.checkNotNull(className, "you need to set class name with -Dclass=your.ClassName");
+        }
 
         try {
             initialize();
 
             Artifact artifact = new DefaultArtifact(artifactName);
 
-            DependencyResult dependencyResult = resolveArtifact(artifact);
-
-
-
-            List<ArtifactResult> artifacts = dependencyResult.getArtifactResults();
+            List<ArtifactResult> artifacts = resolveDependencies(artifact);
 
 //            List<ArtifactResult> artifactResults = getDependencies(artifact);
 
-            new ExecObject(getLog(),
+            if (mains != null) {
+                executeMains(artifact, artifacts);
+                return;
+            }
+
+            ExecObject execObject = new ExecObject(getLog(),
                 artifact, artifacts, className,
                 parseArgs(),
                 systemProperties
-            ).execute();
+            ).setTimings(timings).setVirtualThreads(virtualThreads);
+
+            if (fork) {
+                int exitCode = execObject.fork(javaExePath(), splitJvmOptions(jvmOptions));
+
+                if (exitCode != 0) {
+                    throw new MojoFailureException(className + " exited with code " + exitCode);
+                }
+            } else {
+                if (jvmOptions != null) {
+                    getLog().warn("jvmOptions are used only with -Dfork=true");
+                }
+
+                execObject.execute();
+            }
         } catch (Exception e) {
             if(e instanceof RuntimeException){
                 throw (RuntimeException)e;
+            }else if(e instanceof MojoFailureException){
+                throw (MojoFailureException)e;
             }else{
                 getLog().error(e.toString(), e);
                 throw new MojoExecutionException(e.toString());
             }
+        } finally {
+            writeTimings("exec");
+            reportRepositoryMetrics();
         }
     }
 
+    /**
+     * Runs each main in its own thread group, concurrently, and reports status and duration of each one.
+     */
+    private void executeMains(Artifact artifact, List<ArtifactResult> artifacts) throws Exception {
+        List<String[]> commands = new ArrayList<String[]>();
+
+        for (String main : Splitter.on(';').trimResults().omitEmptyStrings().split(mains)) {
+            commands.add(CommandLineUtils.translateCommandline(main));
+        }
+
+        if (commands.isEmpty()) {
+            throw new MojoFailureException("no classes to run in mains: " + mains);
+        }
+
+        if (commandlineArgs != null) {
+            getLog().warn("args are ignored with mains, put arguments after each class name");
+        }
+
+        if (virtualThreads && !fork && commands.size() > 1) {
+            throw new MojoFailureException("virtual threads mode shares the executor property of the JVM, use it with -Dfork=true for several mains");
+        }
+
+        final List<String> forkedJvmOptions = fork ? splitJvmOptions(jvmOptions) : null;
+
+        ClassLoader sharedLoader = null;
+
+        List<ExecObject> execObjects = new ArrayList<ExecObject>();
+
+        for (String[] command : commands) {
+            ExecObject execObject = new ExecObject(getLog(),
+                artifact, artifacts, command[0],
+                Arrays.copyOfRange(command, 1, command.length),
+                systemProperties
+            ).setTimings(timings).setVirtualThreads(virtualThreads);
+
+            if (sharedClassLoader && !fork) {
+                if (sharedLoader == null) {
+                    sharedLoader = execObject.newClassLoader();
+                }
+
+                execObject.setClassLoader(sharedLoader);
+            }
+
+            execObjects.add(execObject);
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(execObjects.size());
+
+        try {
+            List<Future<MainResult>> futures = new ArrayList<Future<MainResult>>();
+
+            for (int i = 0; i < execObjects.size(); i++) {
+                final ExecObject execObject = execObjects.get(i);
+                final String label = Joiner.on(' ').join(commands.get(i));
+
+                futures.add(executor.submit(new Callable<MainResult>() {
+                    @Override
+                    public MainResult call() {
+                        long start = System.currentTimeMillis();
+
+                        try {
+                            int exitCode = 0;
+
+                            if (forkedJvmOptions != null) {
+                                exitCode = execObject.fork(javaExePath(), forkedJvmOptions);
+                            } else {
+                                execObject.execute();
+                            }
+
+                            return new MainResult(label, System.currentTimeMillis() - start, null, exitCode);
+                        } catch (Throwable e) {
+                            return new MainResult(label, System.currentTimeMillis() - start, e, 0);
+                        }
+                    }
+                }));
+            }
+
+            int failed = 0;
+
+            getLog().info("results:");
+
+            for (Future<MainResult> future : futures) {
+                MainResult result = future.get();
+
+                if (result.isOk()) {
+                    getLog().info("  " + result.label + ": OK in " + result.durationMs + "ms");
+                } else {
+                    failed++;
+
+                    getLog().error("  " + result.label + ": FAILED in " + result.durationMs + "ms, " +
+                        (result.failure != null ? result.failure.toString() : "exit code " + result.exitCode));
+                }
+            }
+
+            if (failed > 0) {
+                throw new MojoFailureException(failed + " of " + futures.size() + " mains failed");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
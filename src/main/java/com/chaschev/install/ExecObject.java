@@ -5,6 +5,9 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.resolution.ArtifactResult;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
@@ -117,6 +120,12 @@ public class ExecObject {
     @Parameter(defaultValue = "false")
     private boolean stopUnresponsiveDaemonThreads = false;
 
+    private Timings timings;
+
+    private boolean virtualThreads;
+
+    private ClassLoader classLoader;
+
     public ExecObject(Log log, Artifact artifactToExec, List<ArtifactResult> dependencies, String mainClass, String[] arguments, Property[] systemProperties) {
         this.log = log;
         this.artifactToExec = artifactToExec;
@@ -126,8 +135,111 @@ public class ExecObject {
         this.systemProperties = systemProperties;
     }
 
+    /**
+     * Runs the class in this loader instead of a new one, i.e. to share it between several mains.
+     */
+    public ExecObject setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+        return this;
+    }
+
+    public ClassLoader newClassLoader() {
+        List<URL> urls = createClassPathURLs();
+
+        return new URLClassLoader(urls.toArray(new URL[urls.size()]));
+    }
+
+    public ExecObject setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    public ExecObject setTimings(Timings timings) {
+        this.timings = timings;
+        return this;
+    }
+
     public void execute() {
-        new ClassRunner(this.mainClass, createClassPathURLs(), artifactToExec.toString(), this.arguments, this.cleanupDaemonThreads, System.getProperties(), this.daemonThreadJoinTimeout, this.stopUnresponsiveDaemonThreads, this.systemProperties, this.log).invoke();
+        long start = System.nanoTime();
+
+        try {
+            new ClassRunner(this.mainClass, createClassPathURLs(), artifactToExec.toString(), this.arguments, this.cleanupDaemonThreads, System.getProperties(), this.daemonThreadJoinTimeout, this.stopUnresponsiveDaemonThreads, this.systemProperties, this.log)
+                .setTimings(timings)
+                .setVirtualThreads(virtualThreads)
+                .setClassLoader(classLoader)
+                .invoke();
+        } finally {
+            if (timings != null) {
+                timings.record("exec", start);
+            }
+        }
+    }
+
+    /**
+     * Runs the main class in a new JVM via the {@link Runner}, with the given JVM options. Output goes to the console.
+     *
+     * @return the exit code of the forked JVM
+     */
+    public int fork(File javaExe, List<String> jvmOptions) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+
+        File classpathFile = File.createTempFile("installation-exec", ".classpath");
+
+        try {
+            PrintWriter writer = new PrintWriter(classpathFile, "UTF-8");
+
+            try {
+                for (ArtifactResult dependency : dependencies) {
+                    writer.println(dependency.getArtifact().getFile().getAbsolutePath());
+                }
+            } finally {
+                writer.close();
+            }
+
+            List<String> command = new ArrayList<String>();
+
+            command.add(javaExe.getAbsolutePath());
+            command.addAll(jvmOptions);
+
+            if (virtualThreads) {
+                command.add("-D" + VirtualThreads.PROPERTY + "=true");
+            }
+
+            if (systemProperties != null) {
+                for (Property property : systemProperties) {
+                    command.add("-D" + property.getKey() + "=" + (property.getValue() == null ? "" : property.getValue()));
+                }
+            }
+
+            command.addAll(Arrays.asList(
+                "-cp", InstallMojo.getJarByClass(Runner.class).getAbsolutePath(),
+                Runner.class.getName(),
+                classpathFile.getAbsolutePath(),
+                mainClass
+            ));
+
+            if (arguments != null) {
+                command.addAll(Arrays.asList(arguments));
+            }
+
+            log.info("forking " + mainClass + " with JVM options " + jvmOptions);
+            log.debug("command: " + command);
+
+            Process process = new ProcessBuilder(command).inheritIO().start();
+
+            try {
+                return process.waitFor();
+            } catch (InterruptedException e) {
+                process.destroy();
+                throw e;
+            }
+        } finally {
+            classpathFile.delete();
+
+            if (timings != null) {
+                timings.record("exec", start);
+            }
+        }
     }
 
     /**
@@ -153,6 +265,10 @@ public class ExecObject {
                 }
             }
 
+            if (LauncherDaemon.isExit(throwable)) {
+                return; //System.exit() trapped by the daemon, not an error
+            }
+
             if (log != null) {
                 log.warn(throwable);
             } else {
@@ -218,6 +334,15 @@ public class ExecObject {
         private long daemonThreadJoinTimeout;
         private boolean stopUnresponsiveDaemonThreads;
         private Property[] systemProperties;
+        private ClassLoader classLoader;
+        private Timings timings;
+
+        private boolean virtualThreads;
+
+        /**
+         * Reused for thread group snapshots while joining and terminating threads.
+         */
+        private Thread[] threads = new Thread[16];
 
         public ClassRunner(String mainClass, List<URL> classPathURLs, String jarPath, String[] arguments, boolean cleanupDaemonThreads, Properties originalSystemProperties, long daemonThreadJoinTimeout, boolean stopUnresponsiveDaemonThreads, Property[] systemProperties, Log log) {
             this.mainClass = mainClass;
@@ -232,6 +357,32 @@ public class ExecObject {
             this.log = log;
         }
 
+        /**
+         * Use an existing classloader instead of creating one from the classpath URLs, i.e. a warm one.
+         */
+        public ClassRunner setClassLoader(ClassLoader classLoader) {
+            this.classLoader = classLoader;
+            return this;
+        }
+
+        /**
+         * Offers a virtual-thread-per-task executor to the app, JDK 21+. main() stays on a platform thread.
+         *
+         * @see VirtualThreads
+         */
+        public ClassRunner setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+
+        /**
+         * Records classloader creation, main class loading and the run, and marks the moment main() is entered.
+         */
+        public ClassRunner setTimings(Timings timings) {
+            this.timings = timings;
+            return this;
+        }
+
         public void invoke() {
             info("executing class " + mainClass + " in " + jarPath);
 
@@ -251,13 +402,21 @@ public class ExecObject {
             msg.append(")");
             debug(msg.toString());
 
-            IsolatedThreadGroup threadGroup = new IsolatedThreadGroup(mainClass, log /*name*/);
+            final IsolatedThreadGroup threadGroup = new IsolatedThreadGroup(mainClass, log /*name*/);
             final String[] finalArguments = arguments;
-            Thread bootstrapThread = new Thread(threadGroup, new Runnable() {
+            Runnable runMain = new Runnable() {
                 public void run() {
                     try {
+                        long loadStart = System.nanoTime();
+
                         Method main = Thread.currentThread().getContextClassLoader().loadClass(mainClass)
                             .getMethod("main", new Class[]{String[].class});
+
+                        if (timings != null) {
+                            timings.record("loadMainClass", loadStart);
+                            timings.mark("main");
+                        }
+
                         if (!main.isAccessible()) {
                             debug("Setting accessibility to true in order to invoke main().");
                             main.setAccessible(true);
@@ -268,23 +427,65 @@ public class ExecObject {
                         }
                         main.invoke(null, new Object[]{finalArguments});
                     } catch (NoSuchMethodException e) {   // just pass it on
-                        Thread.currentThread().getThreadGroup().uncaughtException(Thread.currentThread(),
+                        threadGroup.uncaughtException(Thread.currentThread(),
                             new Exception(
                                 "The specified mainClass doesn't contain a main method with appropriate signature.", e
                             )
                         );
                     } catch (Exception e) {   // just pass it on
-                        Thread.currentThread().getThreadGroup().uncaughtException(Thread.currentThread(), e);
+                        threadGroup.uncaughtException(Thread.currentThread(), e);
                     }
                 }
-            }, mainClass + ".main()");
+            };
+
+            VirtualThreads virtual = null;
+
+            if (virtualThreads && VirtualThreads.isSupported()) {
+                virtual = new VirtualThreads(threadGroup);
+                System.getProperties().put(VirtualThreads.EXECUTOR_PROPERTY, virtual.getExecutor());
+            } else if (virtualThreads) {
+                warn("virtual threads require JDK 21+, the executor is not available");
+            }
+
+            // main() stays in the thread group, so threads it starts are joined, cleaned up and report exceptions
+            Thread bootstrapThread = new Thread(threadGroup, runMain, mainClass + ".main()");
+
+            if (classLoader != null) {
+                bootstrapThread.setContextClassLoader(classLoader);
+            } else {
+                long loaderStart = System.nanoTime();
+
+                bootstrapThread.setContextClassLoader(getClassLoader(classPathURLs));
+
+                if (timings != null) {
+                    timings.record("createClassLoader", loaderStart);
+                }
+            }
 
-            bootstrapThread.setContextClassLoader(getClassLoader(classPathURLs));
             setSystemProperties(systemProperties);
 
+            long runStart = System.nanoTime();
+
             bootstrapThread.start();
+
             joinNonDaemonThreads(threadGroup);
 
+            if (virtual != null) {
+                // virtual threads are not in the thread group, so they are waited for separately
+                try {
+                    virtual.awaitTasks();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    warn("interrupted while waiting for virtual threads", e);
+                }
+
+                joinNonDaemonThreads(threadGroup);
+            }
+
+            if (timings != null) {
+                timings.record("run", runStart);
+            }
+
             // It's plausible that spontaneously a non-daemon thread might be created as we try and shut down,
             // but it's too late since the termination condition (only daemon threads) has been triggered.
 
@@ -299,6 +500,10 @@ public class ExecObject {
                 }
             }
 
+            if (virtual != null) {
+                System.getProperties().remove(VirtualThreads.EXECUTOR_PROPERTY);
+            }
+
             if (originalSystemProperties != null) {
                 System.setProperties(originalSystemProperties);
             }
@@ -314,7 +519,8 @@ public class ExecObject {
 
 
         /**
-         * Set up a classloader for the execution of the main class.
+         * Set up a classloader for the execution of the main class. URLClassLoader is parallel capable, so threads
+         * of the app lock only the classes they load.
          *
          * @param classpathURLs
          * @return the classloader
@@ -343,9 +549,10 @@ public class ExecObject {
             boolean foundNonDaemon;
             do {
                 foundNonDaemon = false;
-                Collection threads = getActiveThreads(threadGroup);
-                for (Iterator iter = threads.iterator(); iter.hasNext(); ) {
-                    Thread thread = (Thread) iter.next();
+                int count = snapshot(threadGroup, Collections.<Thread>emptySet());
+                for (int i = 0; i < count; i++) {
+                    Thread thread = threads[i];
+                    threads[i] = null;
                     if (thread.isDaemon()) {
                         continue;
                     }
@@ -357,8 +564,9 @@ public class ExecObject {
 
         private void joinThread(Thread thread, long timeoutMsecs) {
             try {
-                String s = "joining on thread " + thread;
-                debug(s);
+                if (isDebugEnabled()) {
+                    debug("joining on thread " + thread);
+                }
                 thread.join(timeoutMsecs);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();   // good practice if don't throw
@@ -371,34 +579,57 @@ public class ExecObject {
             }
         }
 
+        /**
+         * Copies live threads of the group, except <code>excluded</code>, to the reused {@link #threads} buffer.
+         * The buffer grows when the group doesn't fit, so no threads are missed and nothing is allocated
+         * on repeated calls.
+         *
+         * @return the number of threads copied
+         */
+        private int snapshot(ThreadGroup threadGroup, Set<Thread> excluded) {
+            int count;
+
+            while ((count = threadGroup.enumerate(threads)) == threads.length) {
+                threads = new Thread[threads.length * 2];
+            }
 
-        private Collection getActiveThreads(ThreadGroup threadGroup) {
-            Thread[] threads = new Thread[threadGroup.activeCount()];
-            int numThreads = threadGroup.enumerate(threads);
-            Collection result = new ArrayList(numThreads);
-            for (int i = 0; i < threads.length && threads[i] != null; i++) {
-                result.add(threads[i]);
+            if (excluded.isEmpty()) {
+                return count;
             }
-            return result; //note: result should be modifiable
+
+            int kept = 0;
+
+            for (int i = 0; i < count; i++) {
+                Thread thread = threads[i];
+                threads[i] = null;
+
+                if (!excluded.contains(thread)) {
+                    threads[kept++] = thread;
+                }
+            }
+
+            return kept;
         }
 
         private void terminateThreads(ThreadGroup threadGroup, long daemonThreadJoinTimeout1, boolean stopUnresponsiveDaemonThreads) {
             long startTime = System.currentTimeMillis();
-            Set uncooperativeThreads = new HashSet(); // these were not responsive to interruption
-            for (Collection threads = getActiveThreads(threadGroup); !threads.isEmpty();
-                 threads = getActiveThreads(threadGroup), threads.removeAll(uncooperativeThreads)) {
+            Set<Thread> uncooperativeThreads = new HashSet<Thread>(); // these were not responsive to interruption
+            for (int count = snapshot(threadGroup, uncooperativeThreads); count > 0;
+                 count = snapshot(threadGroup, uncooperativeThreads)) {
                 // Interrupt all threads we know about as of this instant (harmless if spuriously went dead (! isAlive())
                 //   or if something else interrupted it ( isInterrupted() ).
-                for (Iterator iter = threads.iterator(); iter.hasNext(); ) {
-                    Thread thread = (Thread) iter.next();
-                    debug("interrupting thread " + thread);
-                    thread.interrupt();
+                for (int i = 0; i < count; i++) {
+                    if (isDebugEnabled()) {
+                        debug("interrupting thread " + threads[i]);
+                    }
+                    threads[i].interrupt();
                 }
                 // Now join with a timeout and call stop() (assuming flags are set right)
-                for (Iterator iter = threads.iterator(); iter.hasNext(); ) {
-                    Thread thread = (Thread) iter.next();
+                for (int i = 0; i < count; i++) {
+                    Thread thread = threads[i];
+                    threads[i] = null;
                     if (!thread.isAlive()) {
-                        continue; //and, presumably it won't show up in getActiveThreads() next iteration
+                        continue; //and, presumably it won't show up in the next snapshot
                     }
                     if (daemonThreadJoinTimeout1 <= 0) {
                         joinThread(thread, 0); //waits until not alive; no timeout
@@ -438,6 +669,10 @@ public class ExecObject {
             }
         }
 
+        private boolean isDebugEnabled() {
+            return log != null && log.isDebugEnabled();
+        }
+
         private void debug(String s) {
             if (log != null)
                 log.debug(s);
@@ -0,0 +1,140 @@
+package com.chaschev.install;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.ArtifactRepository;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.version.VersionConstraint;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches resolved dependency lists of fixed release versions, which can't change. A cache entry is keyed by
+ * the root coordinates, the scope and the repositories and is valid while all of its files are in the local repo
+ * with the same size and modification time. Graphs with snapshots or versions chosen from ranges are not cached.
+ *
+ * Entry lines are <code>coordinates\tsize\tmtime\tpath</code>, the root artifact goes first.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class GraphCache {
+    private final File dir;
+
+    public GraphCache(File dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * @return true for versions which can't change, i.e. not snapshots, ranges or LATEST/RELEASE
+     */
+    public static boolean isCacheable(Artifact artifact) {
+        String version = artifact.getVersion();
+
+        return !artifact.isSnapshot() &&
+            !"LATEST".equals(version) && !"RELEASE".equals(version) &&
+            !version.startsWith("[") && !version.startsWith("(") && !version.contains(",");
+    }
+
+    /**
+     * @return true when none of the resolved artifacts can change: no snapshots and no versions chosen from ranges
+     */
+    public static boolean isCacheable(List<ArtifactResult> results) {
+        for (ArtifactResult result : results) {
+            if (result == null || result.getArtifact() == null || result.getArtifact().isSnapshot()) return false;
+
+            DependencyNode node = result.getRequest().getDependencyNode();
+
+            if (node != null && !isCacheable(node)) return false;
+        }
+
+        return true;
+    }
+
+    public static boolean isCacheable(DependencyNode node) {
+        VersionConstraint constraint = node.getVersionConstraint();
+
+        if (constraint != null && constraint.getRange() != null) return false;
+
+        return node.getArtifact() == null || isCacheable(node.getArtifact());
+    }
+
+    public static String key(Artifact artifact, String scope, List<RemoteRepository> repositories) {
+        StringBuilder sb = new StringBuilder(artifact.toString()).append('|').append(scope);
+
+        for (RemoteRepository repository : repositories) {
+            sb.append('|').append(repository.getId()).append('=').append(repository.getUrl());
+        }
+
+        return Hashing.sha1().hashString(sb, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * @return cached results or null when there is no entry or some of its files have changed
+     */
+    public List<ArtifactResult> get(String key, ArtifactRepository localRepository) {
+        File file = new File(dir, key);
+
+        if (!file.isFile()) return null;
+
+        try {
+            List<ArtifactResult> results = new ArrayList<ArtifactResult>();
+
+            for (String line : Files.readLines(file, Charsets.UTF_8)) {
+                String[] parts = line.split("\t");
+
+                if (parts.length != 4) return null;
+
+                File artifactFile = new File(parts[3]);
+
+                if (artifactFile.length() != Long.parseLong(parts[1]) ||
+                    artifactFile.lastModified() != Long.parseLong(parts[2])) return null;
+
+                Artifact artifact = new DefaultArtifact(parts[0]).setFile(artifactFile);
+
+                results.add(new ArtifactResult(new ArtifactRequest().setArtifact(artifact))
+                    .setArtifact(artifact)
+                    .setRepository(localRepository));
+            }
+
+            return results.isEmpty() ? null : results;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public void put(String key, List<ArtifactResult> results) throws IOException {
+        List<String> lines = new ArrayList<String>(results.size());
+
+        for (ArtifactResult result : results) {
+            Artifact artifact = result.getArtifact();
+            File file = artifact.getFile();
+
+            lines.add(Joiner.on('\t').join(artifact, file.length(), file.lastModified(), file.getAbsolutePath()));
+        }
+
+        dir.mkdirs();
+
+        File temp = File.createTempFile(key, ".tmp", dir);
+
+        Files.write(Joiner.on('\n').join(lines), temp, Charsets.UTF_8);
+
+        File file = new File(dir, key);
+
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                temp.delete();
+            }
+        }
+    }
+}
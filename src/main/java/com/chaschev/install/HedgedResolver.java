@@ -0,0 +1,325 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.DefaultSessionData;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.util.listener.ChainedTransferListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves artifacts one request per thread. When an artifact is not resolved within a delay, the same artifact is
+ * requested again from the remaining repositories, skipping the first one, and the first successful answer is used.
+ * A slow first repository then costs the delay instead of its full response time or timeout.
+ *
+ * Artifacts already in the local repository resolve without a download, so they are never hedged.
+ *
+ * Hedges run in a copy of the session without named locks, because the lock held by the hedged request would make
+ * its hedge wait. Other requests keep the session's locks. Once an artifact is resolved, transfers of the losing
+ * request are cancelled, and results are returned only after each loser which has started to download is cancelled or
+ * gone. A cancelled transfer deletes its temporary file, so a loser never replaces the winner's file later.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class HedgedResolver {
+    private static final String LOCK_FACTORY = "aether.syncContext.named.factory";
+
+    private final RepositorySystem system;
+    private final RepositorySystemSession session;
+    private final Log log;
+
+    private final int threads;
+    private final long delayMs;
+
+    private final AtomicInteger hedged = new AtomicInteger();
+    private final AtomicInteger hedgesWon = new AtomicInteger();
+
+    /**
+     * @param delayMs time to wait for the first repository before asking the next ones
+     */
+    public HedgedResolver(RepositorySystem system, RepositorySystemSession session, int threads, long delayMs, Log log) {
+        this.system = system;
+        this.session = session;
+        this.threads = Math.max(1, threads);
+        this.delayMs = delayMs;
+        this.log = log;
+    }
+
+    private final class Attempt {
+        final ArtifactRequest request;
+
+        private ArtifactResult result;
+        private ArtifactResolutionException error;
+        private int pending;
+        private int downloading;
+        private boolean hedge;
+
+        Attempt(ArtifactRequest request) {
+            this.request = request;
+        }
+
+        synchronized void succeeded(ArtifactResult result, boolean fromHedge) {
+            pending--;
+
+            if (this.result == null) {
+                this.result = result;
+
+                if (fromHedge) {
+                    hedgesWon.incrementAndGet();
+                }
+            }
+
+            notifyAll();
+        }
+
+        synchronized void failed(ArtifactResolutionException e, boolean fromHedge) {
+            pending--;
+
+            // the first request searches all repositories, so its error is the one to report
+            if (e != null && (error == null || !fromHedge)) {
+                error = e;
+            }
+
+            notifyAll();
+        }
+
+        synchronized ArtifactResult await() throws InterruptedException {
+            while (result == null && pending > 0) {
+                wait();
+            }
+
+            // a loser is cancelled on its next transfer event, so this is short
+            while (result != null && downloading > 0) {
+                wait();
+            }
+
+            return result;
+        }
+
+        synchronized boolean shouldHedge() {
+            if (result != null || pending == 0 || hedge || request.getRepositories().size() < 2) return false;
+
+            hedge = true;
+            pending++;
+
+            return true;
+        }
+    }
+
+    /**
+     * Cancels transfers of a request once its artifact is resolved.
+     */
+    private static final class Canceller extends AbstractTransferListener {
+        private final Attempt attempt;
+
+        /**
+         * Guarded by the attempt. True from the start of a download till it is cancelled or its request is over.
+         */
+        private boolean downloading;
+
+        Canceller(Attempt attempt) {
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void transferInitiated(TransferEvent event) throws TransferCancelledException {
+            check(false);
+        }
+
+        @Override
+        public void transferStarted(TransferEvent event) throws TransferCancelledException {
+            check(true);
+        }
+
+        @Override
+        public void transferProgressed(TransferEvent event) throws TransferCancelledException {
+            check(false);
+        }
+
+        private void check(boolean starting) throws TransferCancelledException {
+            synchronized (attempt) {
+                if (attempt.result != null) {
+                    // a cancelled transfer never moves its file into place, so the winner needn't wait for it to
+                    // drain the connection
+                    requestFinished();
+
+                    throw new TransferCancelledException(attempt.request.getArtifact() + " has been resolved by another request");
+                }
+
+                if (starting && !downloading) {
+                    downloading = true;
+                    attempt.downloading++;
+                }
+            }
+        }
+
+        void requestFinished() {
+            synchronized (attempt) {
+                if (downloading) {
+                    downloading = false;
+                    attempt.downloading--;
+                    attempt.notifyAll();
+                }
+            }
+        }
+    }
+
+    public List<ArtifactResult> resolveArtifacts(Collection<ArtifactRequest> requests)
+        throws ArtifactResolutionException, InterruptedException {
+        // fresh session data, so the hedge session gets its own sync context adapter
+        final DefaultRepositorySystemSession hedgeSession = new DefaultRepositorySystemSession(session);
+        hedgeSession.setData(new DefaultSessionData());
+        hedgeSession.setConfigProperty(LOCK_FACTORY, "noop");
+
+        // hedges get their own pool, so they don't queue behind the requests they are hedging
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory("resolver"));
+        final ExecutorService hedgeExecutor = Executors.newFixedThreadPool(threads, threadFactory("hedge"));
+
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            List<Attempt> attempts = new ArrayList<Attempt>(requests.size());
+
+            for (ArtifactRequest request : requests) {
+                final Attempt attempt = new Attempt(request);
+
+                attempts.add(attempt);
+
+                attempt.pending = 1;
+
+                final Runnable hedgeTask = new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!attempt.shouldHedge()) return;
+
+                        List<RemoteRepository> repositories = attempt.request.getRepositories();
+
+                        ArtifactRequest hedgeRequest = new ArtifactRequest(attempt.request.getArtifact(),
+                            new ArrayList<RemoteRepository>(repositories.subList(1, repositories.size())),
+                            attempt.request.getRequestContext());
+
+                        hedgeRequest.setDependencyNode(attempt.request.getDependencyNode());
+
+                        hedged.incrementAndGet();
+
+                        if (log.isDebugEnabled()) {
+                            log.debug("hedging " + attempt.request.getArtifact() + " after " + delayMs + " ms");
+                        }
+
+                        submit(hedgeExecutor, hedgeSession, attempt, hedgeRequest, true, null);
+                    }
+                };
+
+                // the delay counts from the start of the request, not from its submission to the queue
+                submit(executor, session, attempt, request, false, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            scheduler.schedule(hedgeTask, delayMs, TimeUnit.MILLISECONDS);
+                        } catch (RejectedExecutionException e) {
+                            //resolution is over
+                        }
+                    }
+                });
+            }
+
+            List<ArtifactResult> results = new ArrayList<ArtifactResult>(attempts.size());
+
+            boolean failed = false;
+
+            for (Attempt attempt : attempts) {
+                ArtifactResult result = attempt.await();
+
+                if (result == null) {
+                    result = attempt.error == null ? null : attempt.error.getResult();
+
+                    if (result == null) {
+                        result = new ArtifactResult(attempt.request);
+                        result.addException(new IllegalStateException(attempt.request.getArtifact() + " was not resolved"));
+                    }
+
+                    failed = true;
+                }
+
+                results.add(result);
+            }
+
+            if (hedged.get() > 0) {
+                log.info("hedged " + hedged.get() + " of " + attempts.size() + " downloads after " + delayMs +
+                    " ms, " + hedgesWon.get() + " answered first");
+            }
+
+            if (failed) {
+                throw new ArtifactResolutionException(results);
+            }
+
+            return results;
+        } finally {
+            scheduler.shutdownNow();
+            // losing requests which haven't started to download are cancelled when they do
+            executor.shutdown();
+            hedgeExecutor.shutdown();
+        }
+    }
+
+    private static ThreadFactory threadFactory(final String name) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    private void submit(ExecutorService executor, RepositorySystemSession session, final Attempt attempt,
+                        final ArtifactRequest request, final boolean hedge, final Runnable onStart) {
+        final Canceller canceller = new Canceller(attempt);
+
+        final DefaultRepositorySystemSession requestSession = new DefaultRepositorySystemSession(session);
+        requestSession.setTransferListener(ChainedTransferListener.newInstance(canceller, session.getTransferListener()));
+
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (onStart != null) {
+                        onStart.run();
+                    }
+
+                    try {
+                        attempt.succeeded(system.resolveArtifact(requestSession, request), hedge);
+                    } catch (ArtifactResolutionException e) {
+                        attempt.failed(e, hedge);
+                    } catch (RuntimeException e) {
+                        ArtifactResult result = new ArtifactResult(request);
+                        result.addException(e);
+                        attempt.failed(new ArtifactResolutionException(Collections.singletonList(result)), hedge);
+                    } finally {
+                        canceller.requestFinished();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //resolution is over
+            attempt.failed(null, hedge);
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.chaschev.install;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.CodeSigner;
+import java.security.CodeSource;
+import java.security.ProtectionDomain;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipFile;
+
+/**
+ * A classloader which looks up classes and resources only in the jars listed for their package in a
+ * {@link PackageIndex}. Jars are opened lazily, on the first lookup which needs them, so an app with a long
+ * classpath opens only the jars it uses.
+ *
+ * The loader is parallel capable: classes are locked by name, and jars are opened under their own locks, so
+ * threads of a multi-threaded app don't wait for each other while loading different classes.
+ *
+ * Only JDK classes are used here, because the Runner is launched with its own jar on the classpath.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class IndexedClassLoader extends ClassLoader implements Closeable {
+    static {
+        registerAsParallelCapable();
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final URL[] urls;
+    private final Map<String, int[]> packages;
+
+    private final AtomicReferenceArray<JarFile> jars;
+    private final Object[] jarLocks;
+    private final AtomicReferenceArray<ProtectionDomain> domains;
+
+    private volatile boolean closed;
+
+    /**
+     * @param urls file URLs of jars, in classpath order
+     */
+    public IndexedClassLoader(List<URL> urls, PackageIndex index) {
+        this(urls, index, getSystemClassLoader());
+    }
+
+    public IndexedClassLoader(List<URL> urls, PackageIndex index, ClassLoader parent) {
+        super(parent);
+
+        this.urls = urls.toArray(new URL[urls.size()]);
+        this.packages = index.getPackages();
+        this.jars = new AtomicReferenceArray<JarFile>(this.urls.length);
+        this.jarLocks = new Object[this.urls.length];
+        this.domains = new AtomicReferenceArray<ProtectionDomain>(this.urls.length);
+
+        for (int i = 0; i < jarLocks.length; i++) {
+            jarLocks[i] = new Object();
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        String path = name.replace('.', '/').concat(".class");
+
+        for (int position : candidates(path)) {
+            try {
+                JarFile jar = jar(position);
+
+                if (jar == null) continue;
+
+                JarEntry entry = jar.getJarEntry(path);
+
+                if (entry != null) {
+                    return define(name, position, jar, entry);
+                }
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+
+        throw new ClassNotFoundException(name);
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        for (int position : candidates(name)) {
+            URL url = resource(position, name);
+
+            if (url != null) return url;
+        }
+
+        return null;
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) throws IOException {
+        List<URL> resources = new ArrayList<URL>(1);
+
+        for (int position : candidates(name)) {
+            URL url = resource(position, name);
+
+            if (url != null) {
+                resources.add(url);
+            }
+        }
+
+        return Collections.enumeration(resources);
+    }
+
+    /**
+     * @return the number of jars which have been opened
+     */
+    public int getOpenedJarCount() {
+        int count = 0;
+
+        for (int i = 0; i < jars.length(); i++) {
+            if (jars.get(i) != null) count++;
+        }
+
+        return count;
+    }
+
+    public void close() throws IOException {
+        closed = true;
+
+        for (int i = 0; i < jars.length(); i++) {
+            synchronized (jarLocks[i]) {
+                JarFile jar = jars.getAndSet(i, null);
+
+                if (jar != null) {
+                    jar.close();
+                }
+            }
+        }
+    }
+
+    private int[] candidates(String name) {
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+
+        int[] positions = packages.get(PackageIndex.directoryOf(name));
+
+        return positions == null ? NONE : positions;
+    }
+
+    private URL resource(int position, String name) {
+        try {
+            JarFile jar = jar(position);
+
+            if (jar == null || jar.getEntry(name) == null) return null;
+
+            return new URL("jar:" + urls[position] + "!/" + name);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private Class<?> define(String name, int position, JarFile jar, JarEntry entry) throws IOException {
+        byte[] bytes = read(jar, entry);
+
+        int lastDot = name.lastIndexOf('.');
+
+        if (lastDot > 0) {
+            definePackageIfNeeded(name.substring(0, lastDot), jar, urls[position]);
+        }
+
+        CodeSigner[] signers = entry.getCodeSigners();
+
+        ProtectionDomain domain = signers == null ? domain(position) :
+            new ProtectionDomain(new CodeSource(urls[position], signers), null, this, null);
+
+        return defineClass(name, bytes, 0, bytes.length, domain);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void definePackageIfNeeded(String packageName, JarFile jar, URL url) throws IOException {
+        if (getPackage(packageName) != null) return;
+
+        Manifest manifest = jar.getManifest();
+
+        try {
+            if (manifest == null) {
+                definePackage(packageName, null, null, null, null, null, null, null);
+            } else {
+                Attributes attributes = manifest.getMainAttributes();
+
+                definePackage(packageName,
+                    attributes.getValue(Attributes.Name.SPECIFICATION_TITLE),
+                    attributes.getValue(Attributes.Name.SPECIFICATION_VERSION),
+                    attributes.getValue(Attributes.Name.SPECIFICATION_VENDOR),
+                    attributes.getValue(Attributes.Name.IMPLEMENTATION_TITLE),
+                    attributes.getValue(Attributes.Name.IMPLEMENTATION_VERSION),
+                    attributes.getValue(Attributes.Name.IMPLEMENTATION_VENDOR),
+                    "true".equalsIgnoreCase(attributes.getValue(Attributes.Name.SEALED)) ? url : null);
+            }
+        } catch (IllegalArgumentException e) {
+            //defined concurrently
+        }
+    }
+
+    private ProtectionDomain domain(int position) {
+        ProtectionDomain domain = domains.get(position);
+
+        if (domain == null) {
+            domains.compareAndSet(position, null,
+                new ProtectionDomain(new CodeSource(urls[position], (CodeSigner[]) null), null, this, null));
+
+            domain = domains.get(position);
+        }
+
+        return domain;
+    }
+
+    private JarFile jar(int position) throws IOException {
+        JarFile jar = jars.get(position);
+
+        if (jar != null) return jar;
+
+        synchronized (jarLocks[position]) {
+            jar = jars.get(position);
+
+            if (jar == null) {
+                if (closed) throw new IOException("classloader is closed");
+
+                File file;
+
+                try {
+                    file = new File(urls[position].toURI());
+                } catch (Exception e) {
+                    throw new MalformedURLException("not a file url: " + urls[position]);
+                }
+
+                if (!file.isFile()) return null;
+
+                jar = openJar(file);
+
+                jars.set(position, jar);
+            }
+
+            return jar;
+        }
+    }
+
+    /**
+     * Opens multi-release jars for the running JDK version on JDK 9+.
+     */
+    private static JarFile openJar(File file) throws IOException {
+        if (Runner.javaVersion() >= 9) {
+            try {
+                Class<?> versionClass = Class.forName("java.lang.Runtime$Version");
+                Object version = Runtime.class.getMethod("version").invoke(null);
+                Constructor<JarFile> constructor = JarFile.class.getConstructor(File.class, boolean.class, int.class, versionClass);
+
+                return constructor.newInstance(file, true, ZipFile.OPEN_READ, version);
+            } catch (Exception e) {
+                //fall back to the base version
+            }
+        }
+
+        return new JarFile(file);
+    }
+
+    private static byte[] read(JarFile jar, JarEntry entry) throws IOException {
+        InputStream in = jar.getInputStream(entry);
+
+        try {
+            long size = entry.getSize();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int) size : 8192);
+
+            byte[] buffer = new byte[8192];
+            int n;
+
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
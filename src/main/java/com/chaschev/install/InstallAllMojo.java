@@ -0,0 +1,173 @@
+package com.chaschev.install;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Splitter;
+import com.google.common.io.Files;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Installs several artifacts in one Maven invocation. Versions are found and dependency graphs are collected
+ * concurrently over a shared session, all artifacts are resolved in one batch, then shortcuts are written. An artifact
+ * which fails doesn't stop the others, failures are reported at the end.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+@Mojo(name = "install-all", requiresProject = false, threadSafe = true)
+public class InstallAllMojo extends InstallMojo {
+    /**
+     * Artifacts to install separated by comma, i.e. com.chaschev:chutils,com.acme:tool:1.2
+     */
+    @Parameter(property = "artifacts")
+    private String artifacts;
+
+    /**
+     * A file with artifacts to install, one per line. Lines starting with # are ignored.
+     */
+    @Parameter(property = "manifest")
+    private File manifest;
+
+    /**
+     * Number of artifacts to process concurrently.
+     */
+    @Parameter(property = "installThreads", defaultValue = "4")
+    private int installThreads;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try {
+            List<String> names = readArtifactNames();
+
+            if (names.isEmpty()) {
+                throw new MojoFailureException("you need to set artifacts with -Dartifacts=groupId:artifactId,... or -Dmanifest=file");
+            }
+
+            initSession();
+
+            List<String> failed = new ArrayList<String>();
+
+            List<Artifact> roots = resolveVersions(names, failed);
+
+            Map<Artifact, Exception> failures = new LinkedHashMap<Artifact, Exception>();
+
+            Map<Artifact, List<ArtifactResult>> resolved = resolveDependencies(roots, installThreads, failures);
+
+            for (Map.Entry<Artifact, Exception> entry : failures.entrySet()) {
+                getLog().error("could not resolve " + entry.getKey() + ": " + entry.getValue().toString());
+                failed.add(entry.getKey().toString());
+            }
+
+            File installToDir = getInstallToDir();
+
+            for (List<ArtifactResult> dependencies : resolved.values()) {
+                Artifact artifact = dependencies.get(0).getArtifact();
+
+                try {
+                    installArtifact(artifact, dependencies, installToDir);
+                } catch (Exception e) {
+                    getLog().error("could not install " + artifact + ": " + e.toString());
+                    failed.add(artifact.toString());
+                }
+            }
+
+            if (!failed.isEmpty()) {
+                throw new MojoFailureException("could not install: " + failed);
+            }
+
+            getLog().info("installed " + resolved.size() + " artifacts");
+        } catch (Exception e) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else if (e instanceof MojoFailureException) {
+                throw (MojoFailureException) e;
+            } else {
+                getLog().error(e.toString(), e);
+                throw new MojoExecutionException(e.toString());
+            }
+        } finally {
+            writeTimings("install-all");
+            reportRepositoryMetrics();
+        }
+    }
+
+    private List<String> readArtifactNames() throws IOException {
+        List<String> names = new ArrayList<String>();
+
+        if (artifacts != null) {
+            for (String name : Splitter.on(',').trimResults().omitEmptyStrings().split(artifacts)) {
+                names.add(name);
+            }
+        }
+
+        if (manifest != null) {
+            for (String line : Files.readLines(manifest, Charsets.UTF_8)) {
+                line = line.trim();
+
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    names.add(line);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * @param failed receives names whose versions couldn't be found
+     */
+    private List<Artifact> resolveVersions(List<String> names, List<String> failed) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, installThreads));
+
+        try {
+            List<Future<Artifact>> futures = new ArrayList<Future<Artifact>>();
+
+            for (final String name : names) {
+                futures.add(executor.submit(new Callable<Artifact>() {
+                    @Override
+                    public Artifact call() throws Exception {
+                        String[] parts = name.split(":");
+
+                        if (parts.length == 2) {
+                            return new DefaultArtifact(name + ":" + resolveVersion(name, artifactVersion));
+                        }
+
+                        if (parts.length == 3) {
+                            String groupArtifact = parts[0] + ":" + parts[1];
+
+                            return new DefaultArtifact(groupArtifact + ":" + resolveVersion(groupArtifact, parts[2]));
+                        }
+
+                        return new DefaultArtifact(name);
+                    }
+                }));
+            }
+
+            List<Artifact> roots = new ArrayList<Artifact>();
+
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    roots.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    getLog().error("could not find version of " + names.get(i) + ": " + e.getCause().toString());
+                    failed.add(names.get(i));
+                }
+            }
+
+            return roots;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
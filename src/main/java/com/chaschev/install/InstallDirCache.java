@@ -0,0 +1,62 @@
+package com.chaschev.install;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+import java.io.*;
+import java.util.Properties;
+
+/**
+ * Remembers the bin folder chosen for the shortcuts, so the path isn't searched on each install. Entries are stored
+ * as <code>key=dir</code>, where the key is a hash of the path and of the JDK and Maven homes, so a changed path
+ * chooses again.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class InstallDirCache {
+    private final File file;
+
+    public InstallDirCache(File file) {
+        this.file = file;
+    }
+
+    public static String key(String path, String javaHome, String mavenHome) {
+        return Hashing.sha1().hashString(path + "\n" + javaHome + "\n" + mavenHome, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * @return the chosen dir or null
+     */
+    public String get(String key) {
+        return load().getProperty(key);
+    }
+
+    public synchronized void put(String key, String dir) throws IOException {
+        Properties properties = load();
+
+        if (dir.equals(properties.getProperty(key))) return;
+
+        properties.setProperty(key, dir);
+
+        VersionCache.store(properties, file);
+    }
+
+    private Properties load() {
+        Properties properties = new Properties();
+
+        if (!file.isFile()) return properties;
+
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //a broken cache is an empty cache
+        }
+
+        return properties;
+    }
+}
@@ -0,0 +1,144 @@
+package com.chaschev.install;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What an installed app was made of: the artifact, a hash of the install options and the plugin which wrote its
+ * scripts, digests of its jars and the files which were written. Stored next to the classpath file, so a repeated
+ * install can tell that nothing has changed, or that only dependencies have.
+ *
+ * <pre>
+ * artifact com.acme:tool:jar:1.2
+ * options 3f786850e387550fdab836ed7e6dc881de23001b
+ * dependency 7c4a8d09ca3762af61e59520943dc26494f8941b /home/user/.m2/repository/com/acme/tool/1.2/tool-1.2.jar
+ * output /usr/local/bin/tool
+ * </pre>
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class InstallFingerprint {
+    public static final String EXTENSION = ".fingerprint";
+
+    private final String artifact;
+    private final String options;
+    private final List<String> dependencies;
+
+    private final Set<String> outputs = new LinkedHashSet<String>();
+
+    /**
+     * @param dependencies <code>sha1 path</code> of each jar, the artifact's jar goes first
+     */
+    public InstallFingerprint(String artifact, String options, List<String> dependencies) {
+        this.artifact = artifact;
+        this.options = options;
+        this.dependencies = dependencies;
+    }
+
+    public static File file(File classpathFile) {
+        return new File(classpathFile.getPath() + EXTENSION);
+    }
+
+    public InstallFingerprint addOutput(File file) {
+        outputs.add(file.getAbsolutePath());
+        return this;
+    }
+
+    public InstallFingerprint addOutputs(InstallFingerprint other) {
+        outputs.addAll(other.outputs);
+        return this;
+    }
+
+    public boolean outputsExist() {
+        if (outputs.isEmpty()) return false;
+
+        for (String output : outputs) {
+            if (!new File(output).isFile()) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true when the scripts would be the same: same artifact jar and the same options
+     */
+    public boolean sameSetup(InstallFingerprint other) {
+        return artifact.equals(other.artifact) && options.equals(other.options) &&
+            !dependencies.isEmpty() && !other.dependencies.isEmpty() &&
+            dependencies.get(0).equals(other.dependencies.get(0));
+    }
+
+    /**
+     * @return true when the installation would be the same
+     */
+    public boolean sameAs(InstallFingerprint other) {
+        return sameSetup(other) && dependencies.equals(other.dependencies);
+    }
+
+    public void write(File file) throws IOException {
+        StringBuilder sb = new StringBuilder()
+            .append("artifact ").append(artifact).append('\n')
+            .append("options ").append(options).append('\n');
+
+        for (String dependency : dependencies) {
+            sb.append("dependency ").append(dependency).append('\n');
+        }
+
+        for (String output : outputs) {
+            sb.append("output ").append(output).append('\n');
+        }
+
+        Files.write(sb, file, Charsets.UTF_8);
+    }
+
+    /**
+     * @return the fingerprint or null when there is none or it can't be read
+     */
+    public static InstallFingerprint read(File file) {
+        if (!file.isFile()) return null;
+
+        try {
+            String artifact = null;
+            String options = null;
+
+            List<String> dependencies = new ArrayList<String>();
+            List<String> outputs = new ArrayList<String>();
+
+            for (String line : Files.readLines(file, Charsets.UTF_8)) {
+                int space = line.indexOf(' ');
+
+                if (space < 0) continue;
+
+                String key = line.substring(0, space);
+                String value = line.substring(space + 1);
+
+                if (key.equals("artifact")) {
+                    artifact = value;
+                } else if (key.equals("options")) {
+                    options = value;
+                } else if (key.equals("dependency")) {
+                    dependencies.add(value);
+                } else if (key.equals("output")) {
+                    outputs.add(value);
+                }
+            }
+
+            if (artifact == null || options == null) return null;
+
+            InstallFingerprint fingerprint = new InstallFingerprint(artifact, options, dependencies);
+
+            fingerprint.outputs.addAll(outputs);
+
+            return fingerprint;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
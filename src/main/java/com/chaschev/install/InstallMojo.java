@@ -17,11 +17,13 @@ package com.chaschev.install;
  */
 
 import com.chaschev.chutils.util.OpenBean2;
+import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.SystemUtils;
@@ -30,11 +32,11 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.resolution.ArtifactResult;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.apache.maven.plugin.descriptor.PluginDescriptor;
-import org.eclipse.aether.resolution.DependencyResult;
 
 import java.io.File;
 import java.io.IOException;
@@ -76,17 +78,69 @@ public class InstallMojo extends AbstractExecMojo {
     @Parameter(property = "installTo")
     private String installTo;
 
+    /**
+     * How long to wait for a bin folder on the path to answer, ms. Slow or dead network mounts are skipped.
+     */
+    @Parameter(property = "probeTimeout", defaultValue = "2000")
+    private long probeTimeout;
+
+    /**
+     * Copy the Runner jar next to the shortcuts, so they don't depend on the installer's local repository.
+     */
+    @Parameter(property = "copyRunner", defaultValue = "false")
+    private boolean copyRunner;
+
+    /**
+     * Create a class-data-sharing archive for each shortcut by a training run. Requires JDK 13+.
+     */
+    @Parameter(property = "cds", defaultValue = "false")
+    private boolean cds;
+
+    /**
+     * Arguments for the CDS training runs.
+     */
+    @Parameter(property = "cdsTrainingArgs")
+    private String cdsTrainingArgs;
+
+    @Parameter(property = "cdsTrainingTimeout", defaultValue = "60000")
+    private long cdsTrainingTimeout;
+
+    /**
+     * Make shortcuts thin clients of a resident launcher daemon which keeps warm classloaders.
+     * Linux with JDK 16+ and socat, falls back to a normal launch otherwise.
+     */
+    @Parameter(property = "daemon", defaultValue = "false")
+    private boolean daemon;
+
+    /**
+     * Merge application jars into a single archive next to the classpath file, so class loading doesn't scale with
+     * the number of jars.
+     */
+    @Parameter(property = "merge", defaultValue = "false")
+    private boolean merge;
+
+    /**
+     * Write a package index next to the classpath file, so shortcuts load each class straight from its jar and open
+     * only the jars they use.
+     */
+    @Parameter(property = "indexedClassLoader", defaultValue = "false")
+    private boolean indexedClassLoader;
+
+    /**
+     * Reinstall even when the recorded fingerprint of the installation matches.
+     */
+    @Parameter(property = "force", defaultValue = "false")
+    private boolean force;
+
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
 //            FindAvailableVersions.main(null);
             initialize();
 
             Artifact artifact = new DefaultArtifact(artifactName);
-            DependencyResult dependencyResult = resolveArtifact(artifact);
-
-            artifact = dependencyResult.getRoot().getArtifact();
+            List<ArtifactResult> dependencies = resolveDependencies(artifact);
 
-            List<ArtifactResult> dependencies = dependencyResult.getArtifactResults();
+            artifact = dependencies.get(0).getArtifact();
 
             if (className != null) {
                 new ExecObject(getLog(),
@@ -96,117 +150,317 @@ public class InstallMojo extends AbstractExecMojo {
                 ).execute();
             }
 
-            Class<?> installation = new URLClassLoader(new URL[]{artifact.getFile().toURI().toURL()}).loadClass("Installation");
+            installArtifact(artifact, dependencies, getInstallToDir());
+        } catch (Exception e) {
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            } else {
+                getLog().error(e.toString(), e);
+                throw new MojoExecutionException(e.toString());
+            }
+        } finally {
+            writeTimings("install");
+            reportRepositoryMetrics();
+        }
+    }
+
+    protected File getInstallToDir() throws MojoFailureException {
+        if (installTo == null) {
+            installTo = findPath();
+        }
+
+        if (daemon && !(SystemUtils.IS_OS_LINUX && Runner.javaVersion() >= 16)) {
+            getLog().warn("launcher daemon requires Linux and JDK 16+, skipping");
+            daemon = false;
+        }
+
+        if (cds && !ClassDataSharing.isSupported()) {
+            getLog().warn("class-data-sharing archives require JDK 13+, skipping");
+            cds = false;
+        }
+
+        return new File(installTo);
+    }
+
+    /**
+     * Writes the classpath file and creates shortcuts listed in artifact's Installation class.
+     */
+    protected void installArtifact(Artifact artifact, List<ArtifactResult> dependencies, File installToDir) throws Exception {
+        long start = System.nanoTime();
+
+        List<File> jars = toFiles(dependencies);
+
+        File fingerprintFile = InstallFingerprint.file(classpathFile(artifact, installToDir));
+
+        InstallFingerprint fingerprint = new InstallFingerprint(artifact.toString(), installOptions(), digests(jars));
+
+        InstallFingerprint installed = force || refresh ? null : InstallFingerprint.read(fingerprintFile);
 
-            List<Object[]> entries = (List<Object[]>) OpenBean2.getStaticFieldValue(installation, "shortcuts");
+        timings.record("fingerprint", start);
 
-            if (installTo == null) {
-                installTo = findPath();
+        if (installed != null && installed.outputsExist()) {
+            if (installed.sameAs(fingerprint)) {
+                getLog().info(artifact + " is up to date in " + installToDir.getAbsolutePath() + ", use -Dforce to reinstall");
+                return;
             }
 
-            File installToDir = new File(installTo);
+            // scripts don't depend on the classpath, but the CDS archive does
+            if (installed.sameSetup(fingerprint) && !cds) {
+                getLog().info("dependencies of " + artifact + " have changed, rewriting its classpath");
 
-            File classPathFile = writeClasspath(artifact, dependencies, installToDir);
+                start = System.nanoTime();
 
-            for (Object[] entry : entries) {
-                String shortCut = (String) entry[0];
-                String className = entry[1] instanceof String? entry[1].toString() : ((Class) entry[1]).getName();
+                writeClasspathFiles(artifact, jars, installToDir,
+                    copyRunner ? copyRunnerJar(installToDir) : getJarByClass(Runner.class), fingerprint);
 
-                File file;
-                if (SystemUtils.IS_OS_WINDOWS) {
-                    file = new File(installToDir, shortCut + ".bat");
-                    FileUtils.writeStringToFile(
-                        file,
-                        createLaunchScript(className, classPathFile));
-                } else {
-                    file = new File(installToDir, shortCut);
-                    FileUtils.writeStringToFile(
-                        file,
-                        createLaunchScript(className, classPathFile));
-                    try {
-                        file.setExecutable(true, false);
-                    } catch (Exception e) {
-                        getLog().warn("could not make '" + file.getAbsolutePath() + "' executable: " + e.toString());
-                    }
-                }
+                timings.record("writeClasspath", start);
+
+                fingerprint.addOutputs(installed).write(fingerprintFile);
 
-                getLog().info("created a shortcut: " + file.getAbsolutePath() + " -> " + className);
+                return;
             }
-        } catch (Exception e) {
-            if (e instanceof RuntimeException) {
-                throw (RuntimeException) e;
+        }
+
+        start = System.nanoTime();
+
+        List<Object[]> entries = readShortcuts(artifact);
+
+        timings.record("loadInstallation", start);
+
+        start = System.nanoTime();
+
+        File runnerJar = copyRunner ? copyRunnerJar(installToDir) : getJarByClass(Runner.class);
+
+        File classPathFile = writeClasspathFiles(artifact, jars, installToDir, runnerJar, fingerprint);
+
+        timings.record("writeClasspath", start);
+
+        for (Object[] entry : entries) {
+            start = System.nanoTime();
+
+            String shortCut = (String) entry[0];
+            String className = entry[1] instanceof String? entry[1].toString() : ((Class) entry[1]).getName();
+
+            // an optional third element holds JVM options of the shortcut, the ones set at install time go after them
+            String shortCutJvmOptions = Joiner.on(' ').skipNulls().join(
+                entry.length > 2 ? StringUtils.trimToNull((String) entry[2]) : null,
+                StringUtils.trimToNull(jvmOptions));
+
+            File cdsArchive = cds ? ClassDataSharing.archiveFile(installToDir, shortCut) : null;
+
+            File file;
+            if (SystemUtils.IS_OS_WINDOWS) {
+                file = new File(installToDir, shortCut + ".bat");
+                FileUtils.writeStringToFile(
+                    file,
+                    createLaunchScript(shortCut, className, classPathFile, runnerJar, cdsArchive, shortCutJvmOptions));
             } else {
-                getLog().error(e.toString(), e);
-                throw new MojoExecutionException(e.toString());
+                file = new File(installToDir, shortCut);
+                FileUtils.writeStringToFile(
+                    file,
+                    createLaunchScript(shortCut, className, classPathFile, runnerJar, cdsArchive, shortCutJvmOptions));
+                try {
+                    file.setExecutable(true, false);
+                } catch (Exception e) {
+                    getLog().warn("could not make '" + file.getAbsolutePath() + "' executable: " + e.toString());
+                }
             }
+
+            getLog().info("created a shortcut: " + file.getAbsolutePath() + " -> " + className);
+
+            fingerprint.addOutput(file);
+
+            timings.record("writeScripts", start);
+
+            if (cdsArchive != null) {
+                start = System.nanoTime();
+
+                String[] trainingArgs = cdsTrainingArgs == null ? null : CommandLineUtils.translateCommandline(cdsTrainingArgs);
+
+                if (ClassDataSharing.train(javaExePath(), splitJvmOptions(shortCutJvmOptions), runnerJar, classPathFile, className, trainingArgs,
+                    cdsArchive, cdsTrainingTimeout, getLog())) {
+                    fingerprint.addOutput(cdsArchive);
+                } else {
+                    getLog().warn("could not create CDS archive " + cdsArchive.getAbsolutePath() +
+                        ", it will be created on the first launch");
+                }
+
+                timings.record("cdsTraining", start);
+            }
+        }
+
+        fingerprint.write(fingerprintFile);
+    }
+
+    /**
+     * Reads shortcuts without running the artifact's code, loads the <code>Installation</code> class only when they
+     * can't be read, see {@link ShortcutReader}.
+     */
+    private List<Object[]> readShortcuts(Artifact artifact) throws Exception {
+        try {
+            List<Object[]> shortcuts = ShortcutReader.read(artifact.getFile());
+
+            if (shortcuts != null) return shortcuts;
+        } catch (IOException e) {
+            getLog().debug("could not read shortcuts of " + artifact + " from its jar: " + e);
+        }
+
+        getLog().debug("loading the Installation class of " + artifact + " to read its shortcuts");
+
+        URLClassLoader loader = new URLClassLoader(new URL[]{artifact.getFile().toURI().toURL()});
+
+        try {
+            return (List<Object[]>) OpenBean2.getStaticFieldValue(loader.loadClass("Installation"), "shortcuts");
+        } finally {
+            loader.close();
+        }
+    }
+
+    /**
+     * Merges jars and writes the package index when these are on. Written files are added to the fingerprint.
+     *
+     * @return the classpath file
+     */
+    private File writeClasspathFiles(Artifact artifact, List<File> jars, File installToDir, File runnerJar,
+                                     InstallFingerprint fingerprint) throws IOException {
+        File mergedJar = new File(installToDir, artifact.getGroupId() + "." + artifact.getArtifactId() + ".jar");
+
+        if (merge) {
+            long mergeStart = System.nanoTime();
+
+            new JarMerger(getLog()).merge(jars, mergedJar);
+            jars = Collections.singletonList(mergedJar);
+
+            fingerprint.addOutput(mergedJar);
+
+            timings.record("mergeJars", mergeStart);
+        } else {
+            mergedJar.delete();
+        }
+
+        File classPathFile = writeClasspath(artifact, jars, installToDir, runnerJar);
+
+        fingerprint.addOutput(classPathFile).addOutput(ClasspathIndex.indexFile(classPathFile));
+
+        if (copyRunner) {
+            fingerprint.addOutput(runnerJar);
+        }
+
+        if (indexedClassLoader) {
+            List<File> classPathFiles = new ArrayList<File>(jars);
+            classPathFiles.add(runnerJar);
+
+            fingerprint.addOutput(PackageIndex.write(classPathFile, classPathFiles));
+        } else {
+            PackageIndex.indexFile(classPathFile).delete();
+        }
+
+        return classPathFile;
+    }
+
+    /**
+     * @return a hash of everything but dependencies which goes into installed files: options, the plugin and the
+     * Runner jar, the JVM
+     */
+    private String installOptions() {
+        PluginDescriptor desc = (PluginDescriptor) getPluginContext().get("pluginDescriptor");
+
+        File runnerJar = getJarByClass(Runner.class);
+
+        String options = Joiner.on('|').useForNull("").join(Arrays.asList(
+            desc.getGroupId(), desc.getArtifactId(), desc.getVersion(),
+            runnerJar.getAbsolutePath(), runnerJar.length(), runnerJar.lastModified(),
+            javaExePath().getAbsolutePath(), SystemUtils.OS_NAME,
+            copyRunner, cds, cdsTrainingArgs, daemon, merge, indexedClassLoader, jvmOptions));
+
+        return Hashing.sha1().hashString(options, Charsets.UTF_8).toString();
+    }
+
+    /**
+     * @return <code>sha1 path</code> of each jar, digests are taken from the digest index
+     */
+    private List<String> digests(List<File> jars) throws IOException {
+        List<String> digests = new ArrayList<String>(jars.size());
+
+        for (File jar : jars) {
+            digests.add(digestIndex.digests(jar).sha1 + " " + jar.getAbsolutePath());
         }
+
+        digestIndex.store();
+
+        return digests;
     }
 
-    private String createLaunchScript(String className, File classPathFile) {
-        String jarPath = getJarByClass(Runner.class).getAbsolutePath();
+    private String createLaunchScript(String shortCut, String className, File classPathFile, File runnerJar, File cdsArchive, String shortCutJvmOptions) {
+        String jarPath = runnerJar.getAbsolutePath();
 
         if (IS_OS_UNIX) {
-            String installerUserHome = getInstallerHomeDir(jarPath);
+            String installerUserHome = getInstallerHomeDir(getJarByClass(Runner.class).getAbsolutePath());
 
             jarPath = jarPath.replace(installerUserHome, "$HOME");
         }
 
-        String appLaunchingString = MessageFormat.format("{0} -cp \"{1}\" {2} {3} {4}",
-            javaExePath(), jarPath, Runner.class.getName(), classPathFile.getAbsolutePath(), className);
+        String javaOptions = shortCutJvmOptions.isEmpty() ? "" : shortCutJvmOptions + " ";
+
+        if (cdsArchive != null) {
+            javaOptions += ClassDataSharing.javaOptions(cdsArchive) + " ";
+        }
+
+        String appLaunchingString = MessageFormat.format("{0} {1}-cp \"{2}\" {3} {4} {5}",
+            javaExePath(), javaOptions, jarPath, Runner.class.getName(), classPathFile.getAbsolutePath(), className);
 
-        return sudoInstallationSupportingScript(jarPath, appLaunchingString);
+        String cdsDump = cdsArchive == null ? "" : ClassDataSharing.dumpScript(cdsArchive, classPathFile, appLaunchingString + " $*");
+
+        String daemonClient = "";
+
+        if (daemon) {
+            if (shortCutJvmOptions.isEmpty()) {
+                daemonClient = LauncherDaemon.clientScript(javaExePath(), jarPath, classPathFile, className);
+            } else {
+                getLog().info(shortCut + " has JVM options, so it will be launched in its own JVM, not in the daemon");
+            }
+        }
+
+        return sudoInstallationSupportingScript(jarPath, cdsDump + daemonClient, appLaunchingString);
     }
 
     // Solution for sudo installation problem: if you first install the app by sudo mvn installation:install ...
     // Then plugin which contains the Runner is not on the path of all other users because it has been installed to the root's repo!
-    // To solve this, we first check if the Runner is on the classpath (by running it with a control string).
+    // To solve this, we first check if the Runner jar exists (with a plain file test, so there is only one JVM start per call).
     // If it's not, then the plugin dependency is being fetched.
 
     // A simpler and may be better option would be to supply a bootstrap (containing the Runner) dependency for the app.
     // With this solution however there is no need in the dependency and no coupling.
-    private String sudoInstallationSupportingScript(String jarPath, String appLaunchingString) {
+    private String sudoInstallationSupportingScript(String jarPath, String beforeLaunch, String appLaunchingString) {
         String script;
 
         boolean unix = IS_OS_UNIX;
         PluginDescriptor desc = (PluginDescriptor)getPluginContext().get("pluginDescriptor");
 
         if (unix) {
-            appLaunchingString = appLaunchingString + " $*";
+            appLaunchingString = "exec " + appLaunchingString + " $*";
 
             script = MessageFormat.format("" +
-                "{0} -cp \"{1}\" {2} SMOKE_TEST_HUH 2> /dev/null\n" +
-                "\n" +
-                "rc=$?\n" +
-                "\n" +
-                "if [[ $rc != 0 ]] ; then\n" +
-                "    mvn -U {4}:{5}:{6}:fetch\n" +
-                "    {3}\n" +
-                "    exit $rc\n" +
+                "if [ ! -f \"{0}\" ] ; then\n" +
+                "    mvn -U {2}:{3}:{4}:fetch\n" +
                 "fi\n" +
                 "\n" +
-                "{3}\n",
-                javaExePath(), jarPath, Runner.class.getName(),
+                "{5}{1}\n",
+                jarPath,
                 appLaunchingString,
-                desc.getGroupId(), desc.getArtifactId(), desc.getVersion());
+                desc.getGroupId(), desc.getArtifactId(), desc.getVersion(),
+                beforeLaunch);
         } else {
             //add quotes for "Program Files" case
             appLaunchingString = '"' + substringBefore(appLaunchingString, " ") + "\" " + substringAfter(appLaunchingString, " ");
             appLaunchingString = "@" + appLaunchingString + " %*";
 
+            // mvn is a batch file itself, so it needs to be called, otherwise this script would end after the fetch
             script =
                 MessageFormat.format("" +
-                    "@{0} -cp \"{1}\" {2} SMOKE_TEST_HUH 2> nul\n" +
-                    "@IF ERRORLEVEL 1 GOTO nok\n" +
-                    "{3}\n" +
-                    "@goto leave\n\n" +
-                    "" +
-                    ":nok\n" +
-                    "mvn -U {4}:{5}:{6}:fetch\n" +
-                    "{3}\n" +
-                    "@goto leave\n\n" +
-                    "" +
-                    ":leave\n",
-                    javaExePath(), jarPath, Runner.class.getName(),
+                    "@IF NOT EXIST \"{0}\" call mvn -U {2}:{3}:{4}:fetch\n" +
+                    "{1}\n",
+                    jarPath,
                     appLaunchingString,
                     desc.getGroupId(), desc.getArtifactId(), desc.getVersion());
 
@@ -218,25 +472,41 @@ public class InstallMojo extends AbstractExecMojo {
         return new File(substringBefore(jarPath, "/com/chaschev")).getParentFile().getParentFile().getAbsolutePath();
     }
 
-    private static File javaExePath() {
-        return new File(SystemUtils.getJavaHome(), "bin/" + (IS_OS_UNIX ? "java" : "java.exe"));
-    }
+    private File copyRunnerJar(File installToDir) throws IOException {
+        File jar = getJarByClass(Runner.class);
+        File copy = new File(installToDir, jar.getName());
 
-    private static File writeClasspath(Artifact artifact, List<ArtifactResult> dependencies, File installToDir) throws IOException {
-        final String jarPath = getJarByClass(Runner.class).getAbsolutePath();
+        if (!copy.exists() || copy.length() != jar.length()) {
+            getLog().info("copying Runner to " + copy.getAbsolutePath());
+            FileUtils.copyFile(jar, copy);
+        }
 
-        final String installerUserHome = getInstallerHomeDir(jarPath);
+        return copy;
+    }
 
-        ArrayList<File> classPathFiles = newArrayList(transform(dependencies, new Function<ArtifactResult, File>() {
+    static List<File> toFiles(List<ArtifactResult> dependencies) {
+        return newArrayList(transform(dependencies, new Function<ArtifactResult, File>() {
             @Override
             public File apply(ArtifactResult artifactResult) {
                 return artifactResult.getArtifact().getFile();
             }
         }));
+    }
 
-        classPathFiles.add(getJarByClass(Runner.class));
+    static File classpathFile(Artifact artifact, File installToDir) {
+        return new File(installToDir, artifact.getGroupId() + "." + artifact.getArtifactId());
+    }
+
+    static File writeClasspath(Artifact artifact, List<File> jars, File installToDir, File runnerJar) throws IOException {
+        final String jarPath = getJarByClass(Runner.class).getAbsolutePath();
+
+        final String installerUserHome = getInstallerHomeDir(jarPath);
 
-        File file = new File(installToDir, artifact.getGroupId() + "." + artifact.getArtifactId());
+        ArrayList<File> classPathFiles = new ArrayList<File>(jars);
+
+        classPathFiles.add(runnerJar);
+
+        File file = classpathFile(artifact, installToDir);
         FileUtils.writeLines(file, transform(classPathFiles, new Function<File, String>() {
             @Override
             public String apply(File file) {
@@ -248,49 +518,75 @@ public class InstallMojo extends AbstractExecMojo {
             }
         }));
 
+        ClasspathIndex.write(file, classPathFiles, installerUserHome);
+
         return file;
     }
 
+    /**
+     * Chooses a writable bin folder from the path: one from the JDK, from Maven or a common unix one. Only these
+     * candidates are probed, so unrelated network mounts on the path are never touched. The choice is cached until the
+     * path changes.
+     */
     private String findPath() throws MojoFailureException {
-        String path = Optional.fromNullable(System.getenv("path")).or(System.getenv("PATH"));
+        String path = Optional.fromNullable(System.getenv("path")).or(Optional.fromNullable(System.getenv("PATH"))).or("");
 
-        ArrayList<String> pathEntries = newArrayList(path == null ? new String[0] : path.split(File.pathSeparator));
+        ArrayList<String> pathEntries = newArrayList(path.split(File.pathSeparator));
 
         String javaHomeAbsPath = SystemUtils.getJavaHome().getParentFile().getAbsolutePath();
 
         String mavenHomeAbsPath = getMavenHomeByClass(DefaultMaven.class).getAbsolutePath();
 
-        List<MatchingPath> matchingPaths = new ArrayList<MatchingPath>();
+        DirectoryProbe probe = new DirectoryProbe(probeTimeout, getLog());
+
+        InstallDirCache cache = new InstallDirCache(new File(getCacheDir(), "installTo.properties"));
+
+        String cacheKey = InstallDirCache.key(path, javaHomeAbsPath, mavenHomeAbsPath);
+
+        String cached = cache.get(cacheKey);
+
+        if (cached != null && probe.isWritable(new File(cached))) {
+            getLog().debug("using cached bin folder " + cached);
+            return cached;
+        }
 
         final LinkedHashSet<File> knownBinFolders = Sets.newLinkedHashSet(
             Lists.transform(Arrays.asList("/usr/local/bin", "/usr/local/sbin"), PATH_TO_FILE)
         );
 
-        for (String pathEntry : pathEntries) {
-            File entryFile = new File(pathEntry);
-            String absPath = entryFile.getAbsolutePath();
+        Map<File, Integer> candidates = new LinkedHashMap<File, Integer>();
 
-            boolean writable = isWritable(entryFile);
-
-            getLog().debug("testing " + entryFile.getAbsolutePath() + ": " + (writable ? "writable" : "not writable"));
+        for (String pathEntry : pathEntries) {
+            File entryFile = new File(pathEntry).getAbsoluteFile();
+            String absPath = entryFile.getPath();
 
             if (absPath.startsWith(javaHomeAbsPath)) {
-                addMatching(matchingPaths, absPath, writable, 1);
+                candidates.put(entryFile, 1);
             } else if (absPath.startsWith(mavenHomeAbsPath)) {
-                addMatching(matchingPaths, absPath, writable, 2);
+                candidates.put(entryFile, 2);
+            } else if (IS_OS_UNIX && knownBinFolders.contains(entryFile)) {
+                candidates.put(entryFile, 3);
+            } else {
+                getLog().debug("skipping " + absPath + ", it's not a jdk, maven or common bin folder");
+            }
+        }
+
+        List<File> writable = probe.probe(candidates.keySet());
+
+        List<MatchingPath> matchingPaths = new ArrayList<MatchingPath>();
+
+        for (Map.Entry<File, Integer> e : candidates.entrySet()) {
+            if (e.getValue() < 3) {
+                addMatching(matchingPaths, e.getKey().getPath(), writable.contains(e.getKey()), e.getValue());
             }
         }
 
         if (IS_OS_UNIX && matchingPaths.isEmpty()) {
             getLog().warn("didn't find maven/jdk writable roots available on path, trying common unix paths: " + knownBinFolders);
 
-            final LinkedHashSet<File> pathEntriesSet = Sets.newLinkedHashSet(
-                Lists.transform(pathEntries, PATH_TO_FILE)
-            );
-
-            for (File knownBinFolder : knownBinFolders) {
-                if (pathEntriesSet.contains(knownBinFolder)) {
-                    addMatching(matchingPaths, knownBinFolder.getAbsolutePath(), isWritable(knownBinFolder), 3);
+            for (Map.Entry<File, Integer> e : candidates.entrySet()) {
+                if (e.getValue() == 3) {
+                    addMatching(matchingPaths, e.getKey().getPath(), writable.contains(e.getKey()), 3);
                 }
             }
         }
@@ -304,7 +600,15 @@ public class InstallMojo extends AbstractExecMojo {
                 " but they don't appear on the path or are not writable. You may try running as administrator or specifying -DinstallTo=your-bin-dir-path parameter");
         }
 
-        return matchingPaths.get(0).path;
+        String chosen = matchingPaths.get(0).path;
+
+        try {
+            cache.put(cacheKey, chosen);
+        } catch (IOException e) {
+            getLog().debug("could not cache the bin folder: " + e);
+        }
+
+        return chosen;
     }
 
     private void addMatching(List<MatchingPath> matchingPaths, String matchingPath, boolean writable, int type) {
@@ -326,18 +630,4 @@ public class InstallMojo extends AbstractExecMojo {
         return new File(aClass.getProtectionDomain().getCodeSource().getLocation().getFile());
     }
 
-    private static boolean isWritable(File dir) {
-        try {
-            File tempFile = File.createTempFile("testWrite", "txt", dir);
-            if (tempFile.exists()) {
-                tempFile.delete();
-                return true;
-            }
-        } catch (IOException e) {
-            return false;
-        }
-
-        return dir.canWrite();
-    }
-
 }
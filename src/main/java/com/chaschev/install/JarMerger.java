@@ -0,0 +1,280 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Merges application jars into a single archive, so the classloader opens one zip and finds any class with one lookup
+ * in its central directory instead of probing each jar in turn.
+ *
+ * Entries are taken in classpath order and the first one wins, as with a URLClassLoader. Service files in
+ * META-INF/services are concatenated, signatures are dropped.
+ *
+ * The merged manifest keeps the main attributes of the first jar, the artifact's own, except for Class-Path: its
+ * relative paths would point next to the merged jar, and the dependencies are merged anyway. Implementation and
+ * specification attributes of the other jars are kept in sections of their packages, so
+ * <code>Package.getImplementationVersion()</code> answers the same as before merging.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class JarMerger {
+    private static final String SERVICES = "META-INF/services/";
+
+    private static final int MAX_REPORTED_DUPLICATES = 10;
+
+    private static final Attributes.Name[] PACKAGE_ATTRIBUTES = {
+        Attributes.Name.IMPLEMENTATION_TITLE, Attributes.Name.IMPLEMENTATION_VERSION,
+        Attributes.Name.IMPLEMENTATION_VENDOR, Attributes.Name.SPECIFICATION_TITLE,
+        Attributes.Name.SPECIFICATION_VERSION, Attributes.Name.SPECIFICATION_VENDOR
+    };
+
+    private final Log log;
+
+    public JarMerger(Log log) {
+        this.log = log;
+    }
+
+    public static boolean isSignature(String name) {
+        if (!name.startsWith("META-INF/") || name.indexOf('/', "META-INF/".length()) >= 0) return false;
+
+        String upper = name.toUpperCase(Locale.ENGLISH);
+
+        return upper.endsWith(".SF") || upper.endsWith(".DSA") || upper.endsWith(".RSA") || upper.endsWith(".EC") ||
+            upper.startsWith("META-INF/SIG-");
+    }
+
+    private static boolean isSkipped(String name) {
+        return name.equalsIgnoreCase(JarFile.MANIFEST_NAME) || name.equalsIgnoreCase("META-INF/INDEX.LIST") ||
+            name.equals("module-info.class") || isSignature(name);
+    }
+
+    /**
+     * Writes the merged archive to a temp file and renames it to <code>target</code>, so running apps keep their
+     * opened archive.
+     *
+     * @return duplicate class entries, mapped to the jars which contain them
+     */
+    public Map<String, List<String>> merge(List<File> jars, File target) throws IOException {
+        Map<String, String> owners = new HashMap<String, String>();
+        Map<String, List<String>> duplicates = new TreeMap<String, List<String>>();
+        Map<String, ByteArrayOutputStream> services = new TreeMap<String, ByteArrayOutputStream>();
+
+        boolean multiRelease = false;
+
+        Manifest manifest = new Manifest();
+
+        target = target.getAbsoluteFile();
+
+        target.getParentFile().mkdirs();
+
+        File temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+
+        byte[] buffer = new byte[64 * 1024];
+
+        JarOutputStream out = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+        try {
+            for (File jar : jars) {
+                ZipFile zip;
+
+                try {
+                    zip = new ZipFile(jar);
+                } catch (IOException e) {
+                    throw new IOException("could not open " + jar + " for merging: " + e, e);
+                }
+
+                try {
+                    Manifest jarManifest = readManifest(zip);
+
+                    Attributes packageAttributes = null;
+
+                    if (jarManifest != null) {
+                        multiRelease |= "true".equalsIgnoreCase(jarManifest.getMainAttributes().getValue("Multi-Release"));
+
+                        if (jar == jars.get(0)) {
+                            manifest.getMainAttributes().putAll(jarManifest.getMainAttributes());
+                        } else {
+                            packageAttributes = packageAttributes(jarManifest);
+                        }
+                    }
+
+                    for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                        ZipEntry entry = entries.nextElement();
+                        String name = entry.getName();
+
+                        if (isSkipped(name)) continue;
+
+                        if (name.startsWith(SERVICES) && !entry.isDirectory()) {
+                            ByteArrayOutputStream service = services.get(name);
+
+                            if (service == null) {
+                                services.put(name, service = new ByteArrayOutputStream());
+                            }
+
+                            copy(zip.getInputStream(entry), service, buffer);
+                            service.write('\n');
+                            continue;
+                        }
+
+                        String owner = owners.get(name);
+
+                        if (owner != null) {
+                            if (name.endsWith(".class")) {
+                                List<String> owningJars = duplicates.get(name);
+
+                                if (owningJars == null) {
+                                    duplicates.put(name, owningJars = new ArrayList<String>(Arrays.asList(owner)));
+                                }
+
+                                owningJars.add(jar.getName());
+                            }
+
+                            continue;
+                        }
+
+                        owners.put(name, jar.getName());
+
+                        if (packageAttributes != null && name.endsWith(".class") && name.indexOf('/') > 0) {
+                            String section = PackageIndex.directoryOf(name) + "/";
+
+                            if (!manifest.getEntries().containsKey(section)) {
+                                manifest.getEntries().put(section, packageAttributes);
+                            }
+                        }
+
+                        JarEntry outEntry = new JarEntry(name);
+
+                        outEntry.setTime(entry.getTime());
+
+                        out.putNextEntry(outEntry);
+
+                        if (!entry.isDirectory()) {
+                            copy(zip.getInputStream(entry), out, buffer);
+                        }
+
+                        out.closeEntry();
+                    }
+                } finally {
+                    zip.close();
+                }
+            }
+
+            for (Map.Entry<String, ByteArrayOutputStream> service : services.entrySet()) {
+                out.putNextEntry(new JarEntry(service.getKey()));
+                service.getValue().writeTo(out);
+                out.closeEntry();
+            }
+
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+            manifest.getMainAttributes().remove(Attributes.Name.CLASS_PATH);
+
+            if (!manifest.getMainAttributes().containsKey(new Attributes.Name("Created-By"))) {
+                manifest.getMainAttributes().putValue("Created-By", "installation-maven-plugin");
+            }
+
+            if (multiRelease) {
+                manifest.getMainAttributes().putValue("Multi-Release", "true");
+            }
+
+            out.putNextEntry(new JarEntry(JarFile.MANIFEST_NAME));
+            manifest.write(out);
+            out.closeEntry();
+        } catch (IOException e) {
+            out.close();
+            temp.delete();
+            throw e;
+        }
+
+        out.close();
+
+        if (!temp.renameTo(target)) {
+            target.delete();
+
+            if (!temp.renameTo(target)) {
+                temp.delete();
+                throw new IOException("could not write " + target);
+            }
+        }
+
+        log.info("merged " + jars.size() + " jars into " + target.getAbsolutePath() + ", " + owners.size() + " entries, " +
+            services.size() + " service files");
+
+        reportDuplicates(duplicates);
+
+        return duplicates;
+    }
+
+    private void reportDuplicates(Map<String, List<String>> duplicates) {
+        if (duplicates.isEmpty()) return;
+
+        log.warn(duplicates.size() + " duplicate classes found, the first jar on the classpath wins:");
+
+        int i = 0;
+
+        for (Map.Entry<String, List<String>> entry : duplicates.entrySet()) {
+            String line = "  " + entry.getKey() + " in " + entry.getValue();
+
+            if (i++ < MAX_REPORTED_DUPLICATES) {
+                log.warn(line);
+            } else {
+                log.debug(line);
+            }
+        }
+
+        if (i > MAX_REPORTED_DUPLICATES) {
+            log.warn("  ... and " + (i - MAX_REPORTED_DUPLICATES) + " more, run with -X to see all of them");
+        }
+    }
+
+    private static Manifest readManifest(ZipFile zip) throws IOException {
+        ZipEntry entry = zip.getEntry(JarFile.MANIFEST_NAME);
+
+        if (entry == null) return null;
+
+        InputStream in = zip.getInputStream(entry);
+
+        try {
+            return new Manifest(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return implementation and specification attributes of a jar or null when it has none
+     */
+    private static Attributes packageAttributes(Manifest manifest) {
+        Attributes attributes = new Attributes();
+
+        for (Attributes.Name name : PACKAGE_ATTRIBUTES) {
+            String value = manifest.getMainAttributes().getValue(name);
+
+            if (value != null) {
+                attributes.put(name, value);
+            }
+        }
+
+        return attributes.isEmpty() ? null : attributes;
+    }
+
+    private static void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        try {
+            int n;
+
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
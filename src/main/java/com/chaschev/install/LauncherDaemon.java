@@ -0,0 +1,571 @@
+package com.chaschev.install;
+
+import java.io.*;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.Permission;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A resident launcher which keeps warm classloaders of installed apps, nailgun-style. Linux, JDK 16+.
+ *
+ * A shortcut installed with <code>-Ddaemon=true</code> is a thin client: it sends its working dir, paths to its stdio
+ * (/proc/&lt;pid&gt;/fd/N), the classpath file, the main class, arguments and environment over a Unix domain socket,
+ * NUL-separated. The daemon opens client's stdio, runs the main class via {@link ExecObject.ClassRunner} and replies
+ * with <code>R</code> when the request is accepted and <code>X &lt;exit code&gt;</code> when it's done.
+ *
+ * Environment and working dir can't be changed per call inside of a JVM: relative paths in java.io, NIO and
+ * ProcessBuilder resolve against the daemon's own working dir. So requests with an environment different from daemon's
+ * or from a different working dir are declined (<code>F</code>) and the client falls back to a normal launch. The
+ * daemon is started from the dir of its first call. <code>System.exit()</code> is trapped while the security manager
+ * is supported by the JVM.
+ *
+ * Static state of the apps survives between calls, the same way it does in nailgun.
+ *
+ * Only JDK classes are used here, because the daemon is launched with the Runner jar on the classpath.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class LauncherDaemon {
+    public static final String SOCKET_PATH = "$HOME/.installation/launcher.sock";
+
+    static final long DEFAULT_IDLE_TIMEOUT = 3 * 60 * 60 * 1000L;
+
+    /**
+     * These differ between calls of the same shell and don't make the environment different. The working dir is
+     * compared on its own.
+     */
+    private static final Set<String> VOLATILE_ENV = new HashSet<String>(Arrays.asList("PWD", "OLDPWD", "SHLVL", "_"));
+
+    private static final InheritableThreadLocal<Request> CURRENT = new InheritableThreadLocal<Request>();
+
+    static class ExitException extends SecurityException {
+        final int status;
+
+        ExitException(int status) {
+            super("System.exit(" + status + ")");
+            this.status = status;
+        }
+    }
+
+    static class Request {
+        final InputStream in;
+        final PrintStream out;
+        final PrintStream err;
+
+        Request(InputStream in, PrintStream out, PrintStream err) {
+            this.in = in;
+            this.out = out;
+            this.err = err;
+        }
+
+        void close() {
+            out.flush();
+            err.flush();
+
+            try {
+                in.close();
+            } catch (IOException e) {
+                //ignore
+            }
+
+            out.close();
+            err.close();
+        }
+    }
+
+    private static class CachedLoader {
+        final ClassLoader loader;
+        final List<URL> urls;
+        final long lastModified;
+
+        /**
+         * Guarded by the daemon. Requests running in the loader.
+         */
+        int users;
+
+        /**
+         * Guarded by the daemon. Set when the classpath file has changed, the loader is closed after its last user.
+         */
+        boolean evicted;
+
+        CachedLoader(File classpathFile, List<URL> urls, long lastModified) {
+            this.urls = urls;
+            this.loader = Runner.createClassLoader(classpathFile, urls, null);
+            this.lastModified = lastModified;
+        }
+
+        void close() {
+            if (loader instanceof Closeable) {
+                closeQuietly((Closeable) loader);
+            }
+        }
+    }
+
+    private final File socket;
+    private final long idleTimeout;
+    private final File workingDir = canonical(new File("").getAbsoluteFile());
+    private final Map<String, String> environment = comparableEnvironment(System.getenv());
+    private final Map<String, CachedLoader> loaders = new HashMap<String, CachedLoader>();
+    private final AtomicInteger running = new AtomicInteger();
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    public LauncherDaemon(File socket, long idleTimeout) {
+        this.socket = socket;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("LauncherDaemon <socketFile> [idleTimeoutMs]");
+            System.exit(-1);
+        }
+
+        new LauncherDaemon(
+            new File(args[0]),
+            args.length > 1 ? Long.parseLong(args[1]) : DEFAULT_IDLE_TIMEOUT
+        ).serve();
+    }
+
+    /**
+     * @return a script block which forwards the call to the daemon and exits, or starts the daemon
+     * and falls through to the normal launch
+     */
+    public static String clientScript(File javaExe, String runnerJarPath, File classPathFile, String className) {
+        String securityManager = Runner.javaVersion() >= 12 ? " -Djava.security.manager=allow" : "";
+
+        return "" +
+            "sock=\"" + SOCKET_PATH + "\"\n" +
+            "if command -v socat > /dev/null ; then\n" +
+            "    reply=\"\"\n" +
+            "    if [ -S \"$sock\" ] ; then\n" +
+            "        reply=$( { printf '%s\\0' \"$PWD\" /proc/$$/fd/0 /proc/$$/fd/1 /proc/$$/fd/2 \"" +
+            classPathFile.getAbsolutePath() + "\" " + className + " \"$#\" \"$@\" ; env -0 ; } | " +
+            "socat -t 2147483 - UNIX-CONNECT:\"$sock\" 2> /dev/null )\n" +
+            "    fi\n" +
+            "    case \"$reply\" in\n" +
+            "        *X\\ *) exit \"${reply##*X }\" ;;\n" +
+            "        R*) exit 1 ;;\n" +
+            "        F*) ;;\n" +
+            "        *) rm -f \"$sock\"\n" +
+            "           nohup " + javaExe.getAbsolutePath() + securityManager + " -cp \"" + runnerJarPath + "\" " +
+            LauncherDaemon.class.getName() + " \"$sock\" > /dev/null 2>&1 &\n" +
+            "           ;;\n" +
+            "    esac\n" +
+            "fi\n" +
+            "\n";
+    }
+
+    public void serve() throws Exception {
+        File dir = socket.getParentFile();
+
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("could not create " + dir);
+        }
+
+        dir.setReadable(false, false);
+        dir.setWritable(false, false);
+        dir.setExecutable(false, false);
+        dir.setReadable(true, true);
+        dir.setWritable(true, true);
+        dir.setExecutable(true, true);
+
+        if (socket.exists()) {
+            if (isListening(socket)) {
+                return; //another daemon has started first
+            }
+
+            socket.delete();
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.class
+            .cast(ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unixFamily()));
+
+        server.bind(unixAddress(socket));
+
+        installRequestAwareSystem();
+
+        startWatchdog();
+
+        while (true) {
+            final SocketChannel channel = server.accept();
+
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        handle(channel);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    } finally {
+                        try {
+                            channel.close();
+                        } catch (IOException e) {
+                            //ignore
+                        }
+                    }
+                }
+            }, "launcher-request");
+
+            thread.start();
+        }
+    }
+
+    private void handle(SocketChannel channel) throws IOException {
+        running.incrementAndGet();
+        lastActivity = System.currentTimeMillis();
+
+        try {
+            List<String> fields = readFields(Channels.newInputStream(channel));
+
+            OutputStream reply = Channels.newOutputStream(channel);
+
+            int i = 0;
+
+            String cwd = fields.get(i++);
+            String stdin = fields.get(i++);
+            String stdout = fields.get(i++);
+            String stderr = fields.get(i++);
+            File classpathFile = new File(fields.get(i++));
+            String className = fields.get(i++);
+            int argCount = Integer.parseInt(fields.get(i++));
+
+            String[] args = fields.subList(i, i + argCount).toArray(new String[argCount]);
+
+            i += argCount;
+
+            Map<String, String> clientEnvironment = new HashMap<String, String>();
+
+            for (String entry : fields.subList(i, fields.size())) {
+                int eq = entry.indexOf('=');
+                if (eq > 0) {
+                    clientEnvironment.put(entry.substring(0, eq), entry.substring(eq + 1));
+                }
+            }
+
+            if (!workingDir.equals(canonical(new File(cwd))) ||
+                !environment.equals(comparableEnvironment(clientEnvironment))) {
+                reply.write("F\n".getBytes("UTF-8"));
+                return;
+            }
+
+            // the client's streams may be sockets or not accessible, then the client launches the app itself
+            Request request = openRequest(stdin, stdout, stderr);
+
+            if (request == null) {
+                reply.write("F\n".getBytes("UTF-8"));
+                return;
+            }
+
+            reply.write("R\n".getBytes("UTF-8"));
+            reply.flush();
+
+            int exitCode;
+
+            CURRENT.set(request);
+
+            try {
+                exitCode = run(classpathFile, className, args);
+            } finally {
+                CURRENT.remove();
+                request.close();
+            }
+
+            reply.write(("X " + exitCode + "\n").getBytes("UTF-8"));
+            reply.flush();
+        } finally {
+            lastActivity = System.currentTimeMillis();
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return the request with the client's streams or null when they can't be opened
+     */
+    private static Request openRequest(String stdin, String stdout, String stderr) {
+        InputStream in = null;
+        OutputStream out = null;
+
+        try {
+            in = new FileInputStream(stdin);
+            out = new FileOutputStream(stdout, true);
+            OutputStream err = new FileOutputStream(stderr, true);
+
+            return new Request(in, new PrintStream(out, true), new PrintStream(err, true));
+        } catch (IOException e) {
+            closeQuietly(in);
+            closeQuietly(out);
+
+            return null;
+        }
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            //ignore
+        }
+    }
+
+    private int run(File classpathFile, String className, String[] args) {
+        CachedLoader cached = null;
+
+        try {
+            cached = loaderFor(classpathFile);
+
+            new ExecObject.ClassRunner(
+                className, cached.urls,
+                "",
+                args,
+                true,
+                null,
+                15000,
+                false,
+                null,
+                null
+            ).setClassLoader(cached.loader).invoke();
+
+            return 0;
+        } catch (Exception e) {
+            for (Throwable t = e; t != null; t = t.getCause()) {
+                if (t instanceof ExitException) {
+                    return ((ExitException) t).status;
+                }
+            }
+
+            e.printStackTrace();
+
+            return 1;
+        } finally {
+            if (cached != null) {
+                release(cached);
+            }
+        }
+    }
+
+    private synchronized CachedLoader loaderFor(File classpathFile) throws IOException {
+        String key = classpathFile.getAbsolutePath();
+        long lastModified = classpathFile.lastModified();
+
+        CachedLoader cached = loaders.get(key);
+
+        if (cached == null || cached.lastModified != lastModified) {
+            // the app has been reinstalled, its old jars are closed once the calls running them are over
+            if (cached != null) {
+                cached.evicted = true;
+
+                if (cached.users == 0) {
+                    cached.close();
+                }
+            }
+
+            cached = new CachedLoader(classpathFile, Runner.readClasspath(classpathFile), lastModified);
+            loaders.put(key, cached);
+        }
+
+        cached.users++;
+
+        return cached;
+    }
+
+    private synchronized void release(CachedLoader cached) {
+        if (--cached.users == 0 && cached.evicted) {
+            cached.close();
+        }
+    }
+
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    static boolean isExit(Throwable throwable) {
+        for (Throwable t = throwable; t != null; t = t.getCause()) {
+            if (t instanceof ExitException) return true;
+        }
+
+        return false;
+    }
+
+    private void startWatchdog() {
+        Thread watchdog = new Thread(new Runnable() {
+            public void run() {
+                while (true) {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    boolean idle = running.get() == 0 && System.currentTimeMillis() - lastActivity > idleTimeout;
+
+                    if (idle || !socket.exists()) {
+                        socket.delete();
+                        System.exit(0);
+                    }
+                }
+            }
+        }, "launcher-watchdog");
+
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    // the security manager is the only way to trap System.exit(), on JDK 24+ it is unavailable and exit isn't trapped
+    @SuppressWarnings({"deprecation", "removal"})
+    private static void installRequestAwareSystem() {
+        System.setOut(new PrintStream(new RequestOutputStream(System.out, false), true));
+        System.setErr(new PrintStream(new RequestOutputStream(System.err, true), true));
+        System.setIn(new RequestInputStream(System.in));
+
+        try {
+            System.setSecurityManager(new ExitTrap());
+        } catch (RuntimeException e) {
+            System.err.println("System.exit() can't be trapped in this JVM, apps calling it will stop the daemon: " + e);
+        }
+    }
+
+    private static List<String> readFields(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        byte[] buffer = new byte[4096];
+        int n;
+
+        while ((n = in.read(buffer)) != -1) {
+            bytes.write(buffer, 0, n);
+        }
+
+        String s = bytes.toString("UTF-8");
+
+        List<String> fields = new ArrayList<String>();
+
+        int start = 0;
+
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == 0) {
+                fields.add(s.substring(start, i));
+                start = i + 1;
+            }
+        }
+
+        return fields;
+    }
+
+    private static Map<String, String> comparableEnvironment(Map<String, String> env) {
+        Map<String, String> result = new HashMap<String, String>(env);
+        result.keySet().removeAll(VOLATILE_ENV);
+        return result;
+    }
+
+    private static boolean isListening(File socket) {
+        try {
+            SocketChannel channel = SocketChannel.class
+                .cast(SocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, unixFamily()));
+
+            try {
+                return channel.connect(unixAddress(socket));
+            } finally {
+                channel.close();
+            }
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static ProtocolFamily unixFamily() {
+        return StandardProtocolFamily.valueOf("UNIX");
+    }
+
+    private static SocketAddress unixAddress(File socket) throws Exception {
+        return (SocketAddress) Class.forName("java.net.UnixDomainSocketAddress")
+            .getMethod("of", String.class).invoke(null, socket.getAbsolutePath());
+    }
+
+    private static class RequestOutputStream extends OutputStream {
+        private final PrintStream fallback;
+        private final boolean err;
+
+        RequestOutputStream(PrintStream fallback, boolean err) {
+            this.fallback = fallback;
+            this.err = err;
+        }
+
+        private PrintStream target() {
+            Request request = CURRENT.get();
+            return request == null ? fallback : (err ? request.err : request.out);
+        }
+
+        public void write(int b) {
+            target().write(b);
+        }
+
+        public void write(byte[] b, int off, int len) {
+            target().write(b, off, len);
+        }
+
+        public void flush() {
+            target().flush();
+        }
+    }
+
+    private static class RequestInputStream extends InputStream {
+        private final InputStream fallback;
+
+        RequestInputStream(InputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        private InputStream target() {
+            Request request = CURRENT.get();
+            return request == null ? fallback : request.in;
+        }
+
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+
+    @SuppressWarnings({"deprecation", "removal"})
+    private static class ExitTrap extends SecurityManager {
+        @Override
+        public void checkPermission(Permission perm) {
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+        }
+
+        @Override
+        public void checkExit(int status) {
+            if (CURRENT.get() == null) return;
+
+            // System.exit() would stop all the app's threads, so ask them to quit
+            for (ThreadGroup group = Thread.currentThread().getThreadGroup(); group != null; group = group.getParent()) {
+                if (group instanceof ExecObject.IsolatedThreadGroup) {
+                    group.interrupt();
+                    break;
+                }
+            }
+
+            throw new ExitException(status);
+        }
+    }
+}
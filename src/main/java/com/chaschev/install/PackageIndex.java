@@ -0,0 +1,214 @@
+package com.chaschev.install;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Maps directories of classpath entries, i.e. packages, to positions of the jars which contain them. Used by
+ * {@link IndexedClassLoader} to go straight to the right jar. Stored next to the classpath file.
+ *
+ * Index layout: magic, version, CRC32 of the payload, then the payload: length and mtime of the text classpath
+ * file, number of jars, (size, mtime) of each jar and a list of (directory, jar positions). The index is used only
+ * when it matches the classpath file and its jars, otherwise {@link #read(File, List)} returns null.
+ *
+ * Entries of multi-release jars under META-INF/versions are indexed under their versioned and their base directory.
+ *
+ * Only JDK classes are used here, because the Runner is launched with its own jar on the classpath.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class PackageIndex {
+    public static final String EXTENSION = ".pkgidx";
+
+    private static final int MAGIC = 0x504b4958;
+    private static final int VERSION = 2;
+
+    private static final String VERSIONS = "META-INF/versions/";
+
+    private final int jarCount;
+    private final Map<String, int[]> packages;
+
+    private PackageIndex(int jarCount, Map<String, int[]> packages) {
+        this.jarCount = jarCount;
+        this.packages = packages;
+    }
+
+    public int getJarCount() {
+        return jarCount;
+    }
+
+    public Map<String, int[]> getPackages() {
+        return packages;
+    }
+
+    public static File indexFile(File classpathFile) {
+        return new File(classpathFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * @return the directory of a class or a resource: <code>com/acme</code> for <code>com/acme/Tool.class</code>
+     * and <code>com/acme/</code>, an empty string for the root
+     */
+    public static String directoryOf(String name) {
+        int end = name.endsWith("/") ? name.length() - 1 : name.length();
+        int slash = name.lastIndexOf('/', end - 1);
+
+        return slash < 0 ? "" : name.substring(0, slash);
+    }
+
+    /**
+     * Writes an index for an already written classpath file.
+     *
+     * @param jars jars in classpath order, directories and missing files are skipped
+     */
+    public static File write(File classpathFile, List<File> jars) throws IOException {
+        Map<String, List<Integer>> packages = new TreeMap<String, List<Integer>>();
+
+        for (int i = 0; i < jars.size(); i++) {
+            File jar = jars.get(i);
+
+            if (!jar.isFile()) continue;
+
+            ZipFile zip = new ZipFile(jar);
+
+            try {
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                    String name = entries.nextElement().getName();
+
+                    add(packages, directoryOf(name), i);
+
+                    if (name.startsWith(VERSIONS)) {
+                        int slash = name.indexOf('/', VERSIONS.length());
+
+                        if (slash > 0 && slash < name.length() - 1) {
+                            add(packages, directoryOf(name.substring(slash + 1)), i);
+                        }
+                    }
+                }
+            } finally {
+                zip.close();
+            }
+        }
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(32 * (packages.size() + 1));
+        DataOutputStream out = new DataOutputStream(payload);
+
+        out.writeLong(classpathFile.length());
+        out.writeLong(classpathFile.lastModified());
+        out.writeInt(jars.size());
+
+        for (File jar : jars) {
+            out.writeLong(jar.length());
+            out.writeLong(jar.lastModified());
+        }
+
+        out.writeInt(packages.size());
+
+        for (Map.Entry<String, List<Integer>> entry : packages.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeShort(entry.getValue().size());
+
+            for (Integer position : entry.getValue()) {
+                out.writeShort(position);
+            }
+        }
+
+        out.flush();
+
+        byte[] bytes = payload.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+
+        File indexFile = indexFile(classpathFile);
+
+        DataOutputStream fileOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+
+        try {
+            fileOut.writeInt(MAGIC);
+            fileOut.writeInt(VERSION);
+            fileOut.writeLong(crc.getValue());
+            fileOut.write(bytes);
+        } finally {
+            fileOut.close();
+        }
+
+        return indexFile;
+    }
+
+    private static void add(Map<String, List<Integer>> packages, String directory, int position) {
+        List<Integer> positions = packages.get(directory);
+
+        if (positions == null) {
+            packages.put(directory, positions = new ArrayList<Integer>(1));
+        }
+
+        if (positions.isEmpty() || positions.get(positions.size() - 1) != position) {
+            positions.add(position);
+        }
+    }
+
+    /**
+     * @param classpathEntries entries of the classpath file, in classpath order
+     * @return the index or null when it's missing, corrupt, stale or one of the jars has changed
+     */
+    public static PackageIndex read(File classpathFile, List<URL> classpathEntries) {
+        File indexFile = indexFile(classpathFile);
+
+        if (!indexFile.isFile()) return null;
+
+        try {
+            byte[] bytes = ClasspathIndex.readFully(indexFile);
+
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return null;
+
+            long expectedCrc = in.readLong();
+
+            int payloadOffset = 16;
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes, payloadOffset, bytes.length - payloadOffset);
+
+            if (crc.getValue() != expectedCrc) return null;
+
+            if (in.readLong() != classpathFile.length() || in.readLong() != classpathFile.lastModified()) {
+                return null;
+            }
+
+            int jarCount = in.readInt();
+
+            if (jarCount != classpathEntries.size()) return null;
+
+            for (int i = 0; i < jarCount; i++) {
+                if (!ClasspathIndex.isUnchanged(classpathEntries.get(i).toString(), in.readLong(), in.readLong())) {
+                    return null;
+                }
+            }
+
+            int count = in.readInt();
+
+            Map<String, int[]> packages = new HashMap<String, int[]>(count * 4 / 3 + 1);
+
+            for (int i = 0; i < count; i++) {
+                String directory = in.readUTF();
+                int[] positions = new int[in.readUnsignedShort()];
+
+                for (int j = 0; j < positions.length; j++) {
+                    positions[j] = in.readUnsignedShort();
+                }
+
+                packages.put(directory, positions);
+            }
+
+            return new PackageIndex(jarCount, packages);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
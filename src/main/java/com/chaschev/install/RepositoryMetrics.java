@@ -0,0 +1,320 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.ArtifactNotFoundException;
+import org.eclipse.aether.transfer.MetadataNotFoundException;
+import org.eclipse.aether.transfer.TransferCancelledException;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects download statistics per remote repository: requests, bytes, time to first byte, throughput and failures.
+ * Used to pick the order of mirrors in <code>remoteRepositories</code> and to notice a degraded mirror.
+ *
+ * Time to first byte is the time from the request to the start of the transfer. Throughput of each successful
+ * transfer, measured from its start, goes into a histogram, see {@link #BUCKETS}. Missing artifacts and metadata are
+ * counted apart from failures, they are expected when several repositories are searched.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class RepositoryMetrics extends AbstractTransferListener {
+    public static final String PROPERTY = "installation.repositoryMetrics";
+
+    /**
+     * Upper bounds of throughput buckets, KB/sec.
+     */
+    static final long[] BUCKETS = {64, 256, 1024, 4096, Long.MAX_VALUE};
+
+    private static final String[] BUCKET_NAMES = {"<64", "64-256", "256-1024", "1024-4096", ">=4096"};
+
+    private final Map<TransferResource, Long> requested = new ConcurrentHashMap<TransferResource, Long>();
+    private final Map<TransferResource, Long> started = new ConcurrentHashMap<TransferResource, Long>();
+
+    private final Map<String, Stats> repositories = new ConcurrentHashMap<String, Stats>();
+
+    static final class Stats {
+        final String url;
+
+        long requests;
+        long successes;
+        long missing;
+        long failures;
+        long corrupted;
+
+        long bytes;
+        long transferNanos;
+
+        long firstByteCount;
+        long firstByteNanos;
+        long maxFirstByteNanos;
+
+        final long[] histogram = new long[BUCKETS.length];
+
+        /**
+         * Last response times of this run, first bytes and failed lookups, for {@link RepositoryProfile}.
+         */
+        final LinkedList<Long> responseSamplesMs = new LinkedList<Long>();
+
+        Stats(String url) {
+            this.url = url;
+        }
+
+        synchronized void requested() {
+            requests++;
+        }
+
+        /**
+         * A request cancelled because another one has answered says nothing about the repository.
+         */
+        synchronized void cancelled() {
+            requests--;
+        }
+
+        synchronized void firstByte(long nanos) {
+            firstByteCount++;
+            firstByteNanos += nanos;
+            maxFirstByteNanos = Math.max(maxFirstByteNanos, nanos);
+
+            addSample(nanos);
+        }
+
+        private void addSample(long nanos) {
+            responseSamplesMs.add(nanos / 1000000);
+
+            if (responseSamplesMs.size() > RepositoryProfile.MAX_SAMPLES) {
+                responseSamplesMs.removeFirst();
+            }
+        }
+
+        synchronized void succeeded(long transferred, long nanos) {
+            successes++;
+            bytes += transferred;
+
+            if (nanos > 0) {
+                transferNanos += nanos;
+
+                long kbPerSec = (long) (transferred / 1024.0 / (nanos / 1e9));
+
+                for (int i = 0; i < BUCKETS.length; i++) {
+                    if (kbPerSec < BUCKETS[i]) {
+                        histogram[i]++;
+                        break;
+                    }
+                }
+            }
+        }
+
+        synchronized void failed(Exception e, long nanos) {
+            if (nanos > 0) {
+                addSample(nanos);
+            }
+
+            if (e instanceof MetadataNotFoundException || e instanceof ArtifactNotFoundException) {
+                missing++;
+            } else {
+                failures++;
+            }
+        }
+
+        synchronized void corrupted() {
+            corrupted++;
+        }
+
+        synchronized double averageFirstByteMs() {
+            return firstByteCount == 0 ? 0 : firstByteNanos / 1e6 / firstByteCount;
+        }
+
+        /**
+         * @return average throughput of a single transfer, KB/sec
+         */
+        synchronized double throughput() {
+            return transferNanos == 0 ? 0 : bytes / 1024.0 / (transferNanos / 1e9);
+        }
+    }
+
+    @Override
+    public void transferInitiated(TransferEvent event) {
+        requested.put(event.getResource(), System.nanoTime());
+
+        stats(event).requested();
+    }
+
+    @Override
+    public void transferStarted(TransferEvent event) {
+        long now = System.nanoTime();
+
+        started.put(event.getResource(), now);
+
+        Long requestTime = requested.get(event.getResource());
+
+        if (requestTime != null) {
+            stats(event).firstByte(now - requestTime);
+        }
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        Long startTime = started.remove(event.getResource());
+
+        requested.remove(event.getResource());
+
+        stats(event).succeeded(event.getTransferredBytes(), startTime == null ? 0 : System.nanoTime() - startTime);
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        Long startTime = started.remove(event.getResource());
+        Long requestTime = requested.remove(event.getResource());
+
+        if (event.getException() instanceof TransferCancelledException) {
+            if (requestTime != null) {
+                stats(event).cancelled();
+            }
+            return;
+        }
+
+        // a transfer which has started has been sampled already
+        long responseNanos = startTime == null && requestTime != null ? System.nanoTime() - requestTime : 0;
+
+        stats(event).failed(event.getException(), responseNanos);
+    }
+
+    @Override
+    public void transferCorrupted(TransferEvent event) {
+        stats(event).corrupted();
+    }
+
+    private Stats stats(TransferEvent event) {
+        String url = event.getResource().getRepositoryUrl();
+
+        Stats stats = repositories.get(url);
+
+        if (stats == null) {
+            synchronized (repositories) {
+                stats = repositories.get(url);
+
+                if (stats == null) {
+                    repositories.put(url, stats = new Stats(url));
+                }
+            }
+        }
+
+        return stats;
+    }
+
+    public boolean isEmpty() {
+        return repositories.isEmpty();
+    }
+
+    /**
+     * @return statistics sorted by repository URL
+     */
+    Collection<Stats> getStats() {
+        return new TreeMap<String, Stats>(repositories).values();
+    }
+
+    /**
+     * Logs a line per repository which has been requested.
+     *
+     * @param knownRepositories used to show repository ids next to URLs
+     */
+    public void logSummary(Log log, List<RemoteRepository> knownRepositories) {
+        if (isEmpty()) return;
+
+        log.info("repository metrics:");
+
+        for (Stats stats : getStats()) {
+            synchronized (stats) {
+                log.info(String.format(Locale.ENGLISH,
+                    "  %s: %d requests, %d missing, %d failed, %d KB, first byte avg %.0f ms max %.0f ms, %.1f KB/sec per transfer",
+                    label(stats.url, knownRepositories), stats.requests, stats.missing, stats.failures + stats.corrupted,
+                    (stats.bytes + 1023) / 1024, stats.averageFirstByteMs(), stats.maxFirstByteNanos / 1e6,
+                    stats.throughput()));
+            }
+        }
+    }
+
+    private static String label(String url, List<RemoteRepository> knownRepositories) {
+        if (knownRepositories != null) {
+            for (RemoteRepository repository : knownRepositories) {
+                if (url.equals(repository.getUrl())) {
+                    return repository.getId() + " " + url;
+                }
+            }
+        }
+
+        return url;
+    }
+
+    /**
+     * <pre>
+     * {"repositories": [{"url": "...", "requests": 12, "successes": 9, "missing": 3, "failures": 0, "corrupted": 0,
+     *   "bytes": 1234, "firstByteAvgMs": 120.5, "firstByteMaxMs": 400.1, "kbPerSec": 800.0,
+     *   "histogram": {"<64": 1, "64-256": 2, ...}}, ...]}
+     * </pre>
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder("{\"repositories\": [");
+
+        boolean first = true;
+
+        for (Stats stats : getStats()) {
+            if (!first) sb.append(",");
+            first = false;
+
+            synchronized (stats) {
+                sb.append("\n {\"url\": ");
+                Timings.appendString(sb, stats.url)
+                    .append(", \"requests\": ").append(stats.requests)
+                    .append(", \"successes\": ").append(stats.successes)
+                    .append(", \"missing\": ").append(stats.missing)
+                    .append(", \"failures\": ").append(stats.failures)
+                    .append(", \"corrupted\": ").append(stats.corrupted)
+                    .append(", \"bytes\": ").append(stats.bytes)
+                    .append(", \"firstByteAvgMs\": ").append(round(stats.averageFirstByteMs()))
+                    .append(", \"firstByteMaxMs\": ").append(round(stats.maxFirstByteNanos / 1e6))
+                    .append(", \"kbPerSec\": ").append(round(stats.throughput()))
+                    .append(", \"histogram\": {");
+
+                for (int i = 0; i < BUCKETS.length; i++) {
+                    if (i > 0) sb.append(", ");
+                    Timings.appendString(sb, BUCKET_NAMES[i]).append(": ").append(stats.histogram[i]);
+                }
+
+                sb.append("}}");
+            }
+        }
+
+        return sb.append("\n]}\n").toString();
+    }
+
+    public void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
@@ -0,0 +1,222 @@
+package com.chaschev.install;
+
+import org.eclipse.aether.repository.RemoteRepository;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Response times and hit rates of remote repositories, accumulated over runs from {@link RepositoryMetrics}. Used to try
+ * the cheapest repositories first and to choose a delay for hedged downloads.
+ *
+ * Entries are stored as <code>url=requests successes missing failures responseSamplesMs</code>, the samples are the
+ * last {@link #MAX_SAMPLES} response times, comma-separated. A response is the first byte of a download or a failed
+ * lookup, so a mirror which misses or times out is profiled as well. Counters decay by half once they reach
+ * {@link #MAX_REQUESTS}, so an improved or degraded mirror moves within a few runs.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class RepositoryProfile {
+    static final int MAX_SAMPLES = 32;
+    static final long MAX_REQUESTS = 1000;
+
+    /**
+     * The minimal number of samples to compute a percentile from.
+     */
+    static final int MIN_SAMPLES = 5;
+
+    /**
+     * The response time assumed for a repository without samples.
+     */
+    static final long UNKNOWN_RESPONSE_MS = 1000;
+
+    private final File file;
+
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    static final class Entry {
+        long requests;
+        long successes;
+        long missing;
+        long failures;
+
+        final LinkedList<Long> responseMs = new LinkedList<Long>();
+
+        /**
+         * @return the expected time to find an artifact when this repository is tried first
+         */
+        double cost() {
+            double hitRate = requests == 0 ? 1 : Math.max(0.05, (double) successes / requests);
+            double failureRate = requests == 0 ? 0 : (double) failures / requests;
+
+            return median() / hitRate * (1 + 4 * failureRate);
+        }
+
+        long median() {
+            return percentile(50);
+        }
+
+        long percentile(int percent) {
+            if (responseMs.isEmpty()) return UNKNOWN_RESPONSE_MS;
+
+            List<Long> sorted = new ArrayList<Long>(responseMs);
+
+            Collections.sort(sorted);
+
+            int index = (int) Math.ceil(percent / 100.0 * sorted.size()) - 1;
+
+            return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+        }
+    }
+
+    public RepositoryProfile(File file) {
+        this.file = file;
+
+        load();
+    }
+
+    /**
+     * @return repositories with a profile sorted by their expected cost, repositories without one go first in their
+     * declared order, so they get profiled
+     */
+    public List<RemoteRepository> order(List<RemoteRepository> repositories) {
+        List<RemoteRepository> sorted = new ArrayList<RemoteRepository>(repositories);
+
+        Collections.sort(sorted, new Comparator<RemoteRepository>() {
+            @Override
+            public int compare(RemoteRepository r1, RemoteRepository r2) {
+                return Double.compare(cost(r1), cost(r2));
+            }
+        });
+
+        return sorted;
+    }
+
+    private double cost(RemoteRepository repository) {
+        Entry entry = entries.get(repository.getUrl());
+
+        return entry == null ? 0 : entry.cost();
+    }
+
+    /**
+     * @return a percentile of response times of the repository, or -1 when there are too few samples
+     */
+    public long responsePercentile(RemoteRepository repository, int percent) {
+        Entry entry = entries.get(repository.getUrl());
+
+        if (entry == null || entry.responseMs.size() < MIN_SAMPLES) return -1;
+
+        return entry.percentile(percent);
+    }
+
+    /**
+     * @return a line per repository for the debug log
+     */
+    public String describe(RemoteRepository repository) {
+        Entry entry = entries.get(repository.getUrl());
+
+        if (entry == null) return repository.getUrl() + ": no profile";
+
+        return String.format(Locale.ENGLISH, "%s: %d requests, %d hits, %d failed, median response %d ms, cost %.0f",
+            repository.getUrl(), entry.requests, entry.successes, entry.failures, entry.median(), entry.cost());
+    }
+
+    public void update(RepositoryMetrics metrics) {
+        for (RepositoryMetrics.Stats stats : metrics.getStats()) {
+            Entry entry = entries.get(stats.url);
+
+            if (entry == null) {
+                entries.put(stats.url, entry = new Entry());
+            }
+
+            synchronized (stats) {
+                entry.requests += stats.requests;
+                entry.successes += stats.successes;
+                entry.missing += stats.missing;
+                entry.failures += stats.failures + stats.corrupted;
+
+                for (Long sample : stats.responseSamplesMs) {
+                    entry.responseMs.add(sample);
+                }
+            }
+
+            while (entry.responseMs.size() > MAX_SAMPLES) {
+                entry.responseMs.removeFirst();
+            }
+
+            if (entry.requests >= MAX_REQUESTS) {
+                entry.requests /= 2;
+                entry.successes /= 2;
+                entry.missing /= 2;
+                entry.failures /= 2;
+            }
+        }
+    }
+
+    public synchronized void store() throws IOException {
+        Properties properties = new Properties();
+
+        for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+            Entry entry = mapEntry.getValue();
+
+            StringBuilder sb = new StringBuilder()
+                .append(entry.requests).append(' ')
+                .append(entry.successes).append(' ')
+                .append(entry.missing).append(' ')
+                .append(entry.failures).append(' ');
+
+            for (Iterator<Long> it = entry.responseMs.iterator(); it.hasNext(); ) {
+                sb.append(it.next());
+
+                if (it.hasNext()) sb.append(',');
+            }
+
+            properties.setProperty(mapEntry.getKey(), sb.toString().trim());
+        }
+
+        VersionCache.store(properties, file);
+    }
+
+    private void load() {
+        if (!file.isFile()) return;
+
+        Properties properties = new Properties();
+
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //a broken profile is an empty profile
+            return;
+        }
+
+        for (String url : properties.stringPropertyNames()) {
+            String[] parts = properties.getProperty(url).split(" ");
+
+            if (parts.length < 4) continue;
+
+            try {
+                Entry entry = new Entry();
+
+                entry.requests = Long.parseLong(parts[0]);
+                entry.successes = Long.parseLong(parts[1]);
+                entry.missing = Long.parseLong(parts[2]);
+                entry.failures = Long.parseLong(parts[3]);
+
+                if (parts.length > 4) {
+                    for (String sample : parts[4].split(",")) {
+                        entry.responseMs.add(Long.parseLong(sample));
+                    }
+                }
+
+                entries.put(url, entry);
+            } catch (NumberFormatException e) {
+                //skip a broken entry
+            }
+        }
+    }
+}
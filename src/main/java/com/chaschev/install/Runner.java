@@ -3,7 +3,10 @@ package com.chaschev.install;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -15,6 +18,7 @@ public class Runner {
     public static void main(String[] args) throws Exception {
         if(args.length < 2){
 //            System.out.println(Arrays.asList(args));
+            // shortcuts created by older versions run this check in a separate JVM before launching the app
             if(args.length == 1 && "SMOKE_TEST_HUH".equals(args[0])){
 //                System.out.println("smoke test ok");
                 return;
@@ -26,16 +30,15 @@ public class Runner {
         File classpathFilePath = new File(args[0]);
         String className = args[1];
 
-        List<URL> classpathEntries = new ArrayList<URL>();
-        BufferedReader reader = new BufferedReader(new FileReader(classpathFilePath));
+        Timings timings = startTimings(className);
 
-        String line;
+        long readStart = System.nanoTime();
 
-        String userHome = System.getProperty("user.home");
+        List<URL> classpathEntries = readClasspath(classpathFilePath);
 
-        while( (line = reader.readLine()) != null){
-            line = line.replace("$HOME", userHome);
-            classpathEntries.add(new File(line).toURI().toURL());
+        if (timings != null) {
+            timings.record("readClasspath", readStart);
+            timings.put("classpathSize", classpathEntries.size());
         }
 
         args = Arrays.copyOfRange(args, 2, args.length);
@@ -63,6 +66,105 @@ public class Runner {
             true,
             null,
             null
-        ).invoke();
+        )
+            .setClassLoader(createClassLoader(classpathFilePath, classpathEntries, timings))
+            .setTimings(timings)
+            .setVirtualThreads(Boolean.getBoolean(VirtualThreads.PROPERTY))
+            .invoke();
+    }
+
+    /**
+     * @return an {@link IndexedClassLoader} when the classpath has an up-to-date package index,
+     * otherwise a URLClassLoader
+     */
+    public static ClassLoader createClassLoader(File classpathFile, List<URL> classpathEntries, Timings timings) {
+        long start = System.nanoTime();
+
+        PackageIndex index = PackageIndex.read(classpathFile, classpathEntries);
+
+        ClassLoader loader = index != null ?
+            new IndexedClassLoader(classpathEntries, index) :
+            new URLClassLoader(classpathEntries.toArray(new URL[classpathEntries.size()]));
+
+        if (timings != null) {
+            timings.record("createClassLoader", start);
+            timings.put("classLoader", loader.getClass().getSimpleName());
+        }
+
+        return loader;
+    }
+
+    /**
+     * Timings are opt-in via the <code>INSTALLATION_TIMINGS</code> environment variable. The report is written from
+     * a shutdown hook, so it's written when the app calls System.exit() too. Marks are counted from the JVM start.
+     */
+    private static Timings startTimings(String className) {
+        final File reportFile = Timings.reportFile();
+
+        if (reportFile == null) return null;
+
+        final Timings timings = new Timings(ManagementFactory.getRuntimeMXBean().getStartTime());
+
+        timings.put("goal", "run").put("class", className);
+        timings.mark("runner");
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            public void run() {
+                try {
+                    timings.write(reportFile);
+                } catch (IOException e) {
+                    System.err.println("could not write timings to " + reportFile + ": " + e);
+                }
+            }
+        }, "timings-report"));
+
+        return timings;
+    }
+
+    /**
+     * Reads the classpath from the binary index when it's up to date, otherwise parses the text classpath file.
+     */
+    public static List<URL> readClasspath(File classpathFile) throws IOException {
+        ClasspathIndex index = ClasspathIndex.read(classpathFile);
+
+        if (index != null) {
+            return index.toURLs();
+        }
+
+        return readClasspathFile(classpathFile);
+    }
+
+    static List<URL> readClasspathFile(File classpathFile) throws IOException {
+        List<URL> classpathEntries = new ArrayList<URL>();
+        BufferedReader reader = new BufferedReader(new FileReader(classpathFile));
+
+        try {
+            String line;
+
+            String userHome = System.getProperty("user.home");
+
+            while( (line = reader.readLine()) != null){
+                line = line.replace("$HOME", userHome);
+                classpathEntries.add(new File(line).toURI().toURL());
+            }
+        } finally {
+            reader.close();
+        }
+
+        return classpathEntries;
+    }
+
+    static int javaVersion() {
+        String version = System.getProperty("java.specification.version");
+
+        if (version.startsWith("1.")) {
+            version = version.substring(2);
+        }
+
+        try {
+            return Integer.parseInt(version);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 }
@@ -0,0 +1,425 @@
+package com.chaschev.install;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads shortcuts of an artifact without running its code, so static initializers of the artifact don't run inside
+ * the Maven JVM.
+ *
+ * Shortcuts are taken from the <code>META-INF/installation.shortcuts</code> resource, a line per shortcut:
+ *
+ * <pre>
+ * # name main-class [JVM options]
+ * tool com.acme.Main
+ * batch-tool com.acme.BatchMain -Xmx4g -XX:+UseG1GC
+ * </pre>
+ *
+ * When there is no resource, the <code>&lt;clinit&gt;</code> of the <code>Installation</code> class is interpreted:
+ * constants, class literals, arrays, <code>Arrays.asList</code>, <code>Collections.singletonList</code>,
+ * <code>List.of</code>, Guava's list factories and <code>add</code> calls on a new <code>ArrayList</code>.
+ * Any other instruction means the initializer does more than declare shortcuts, and null is returned, so the caller
+ * falls back to loading the class.
+ *
+ * Class literals are returned as class names.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class ShortcutReader {
+    public static final String RESOURCE = "META-INF/installation.shortcuts";
+
+    public static final String INSTALLATION_CLASS = "Installation.class";
+
+    private static final Set<String> LIST_FACTORIES = new HashSet<String>(Arrays.asList(
+        "java/util/Arrays.asList",
+        "java/util/Collections.singletonList",
+        "java/util/List.of",
+        "com/google/common/collect/Lists.newArrayList",
+        "com/google/common/collect/ImmutableList.of"
+    ));
+
+    private static final Set<String> LIST_CLASSES = new HashSet<String>(Arrays.asList(
+        "java/util/ArrayList", "java/util/LinkedList"));
+
+    /**
+     * @return shortcuts or null when they can't be read without loading the class
+     */
+    public static List<Object[]> read(File jar) throws IOException {
+        ZipFile zip = new ZipFile(jar);
+
+        try {
+            ZipEntry resource = zip.getEntry(RESOURCE);
+
+            if (resource != null) {
+                return parseResource(readFully(zip, resource));
+            }
+
+            ZipEntry installation = zip.getEntry(INSTALLATION_CLASS);
+
+            if (installation == null) return null;
+
+            return scanClass(readFully(zip, installation));
+        } finally {
+            zip.close();
+        }
+    }
+
+    static List<Object[]> parseResource(byte[] bytes) throws IOException {
+        List<Object[]> shortcuts = new ArrayList<Object[]>();
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8"));
+
+        String line;
+
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) continue;
+
+            String[] parts = line.split("\\s+", 3);
+
+            if (parts.length < 2) {
+                throw new IOException("expected 'name main-class [JVM options]' in " + RESOURCE + ": " + line);
+            }
+
+            shortcuts.add(parts);
+        }
+
+        return shortcuts;
+    }
+
+    /**
+     * @return the value of the <code>shortcuts</code> field assigned in the static initializer or null
+     */
+    static List<Object[]> scanClass(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+
+        if (in.readInt() != 0xCAFEBABE) throw new IOException("not a class file");
+
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        Object[] constants = readConstantPool(in);
+
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+        in.readUnsignedShort();
+
+        skip(in, in.readUnsignedShort() * 2);
+
+        int fieldCount = in.readUnsignedShort();
+
+        for (int i = 0; i < fieldCount; i++) {
+            skip(in, 6);
+            skipAttributes(in);
+        }
+
+        int methodCount = in.readUnsignedShort();
+
+        for (int i = 0; i < methodCount; i++) {
+            in.readUnsignedShort();
+
+            String name = (String) constants[in.readUnsignedShort()];
+
+            in.readUnsignedShort();
+
+            int attributeCount = in.readUnsignedShort();
+
+            for (int j = 0; j < attributeCount; j++) {
+                String attributeName = (String) constants[in.readUnsignedShort()];
+                int length = in.readInt();
+
+                if (name.equals("<clinit>") && attributeName.equals("Code")) {
+                    in.readUnsignedShort();
+                    in.readUnsignedShort();
+
+                    byte[] code = new byte[in.readInt()];
+                    in.readFully(code);
+
+                    return interpret(code, constants);
+                }
+
+                skip(in, length);
+            }
+        }
+
+        return null;
+    }
+
+    private static final class Ref {
+        final int tag;
+        final int first;
+        final int second;
+
+        Ref(int tag, int first, int second) {
+            this.tag = tag;
+            this.first = first;
+            this.second = second;
+        }
+    }
+
+    private static final class ClassName {
+        final String name;
+
+        ClassName(String name) {
+            this.name = name;
+        }
+    }
+
+    private static Object[] readConstantPool(DataInputStream in) throws IOException {
+        Object[] constants = new Object[in.readUnsignedShort()];
+
+        for (int i = 1; i < constants.length; i++) {
+            int tag = in.readUnsignedByte();
+
+            switch (tag) {
+                case 1: constants[i] = in.readUTF(); break;
+                case 3: constants[i] = in.readInt(); break;
+                case 4: constants[i] = in.readFloat(); break;
+                case 5: constants[i] = in.readLong(); i++; break;
+                case 6: constants[i] = in.readDouble(); i++; break;
+                case 7: case 8: case 16: case 19: case 20:
+                    constants[i] = new Ref(tag, in.readUnsignedShort(), 0); break;
+                case 9: case 10: case 11: case 12: case 17: case 18:
+                    constants[i] = new Ref(tag, in.readUnsignedShort(), in.readUnsignedShort()); break;
+                case 15:
+                    constants[i] = new Ref(tag, in.readUnsignedByte(), in.readUnsignedShort()); break;
+                default:
+                    throw new IOException("unknown constant pool tag: " + tag);
+            }
+        }
+
+        return constants;
+    }
+
+    /**
+     * Runs the stack part of the byte code which builds constant lists of arrays.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object[]> interpret(byte[] code, Object[] constants) {
+        LinkedList<Object> stack = new LinkedList<Object>();
+
+        Object shortcuts = null;
+
+        int pc = 0;
+
+        try {
+            while (pc < code.length) {
+                int opcode = code[pc] & 0xff;
+
+                switch (opcode) {
+                    case 0x01: stack.push(NULL); pc += 1; break;                                    // aconst_null
+                    case 0x02: case 0x03: case 0x04: case 0x05: case 0x06: case 0x07: case 0x08:   // iconst_m1..5
+                        stack.push(opcode - 0x03); pc += 1; break;
+                    case 0x10: stack.push((int) code[pc + 1]); pc += 2; break;                      // bipush
+                    case 0x11: stack.push((int) (short) u2(code, pc + 1)); pc += 3; break;          // sipush
+                    case 0x12: stack.push(constant(constants, code[pc + 1] & 0xff)); pc += 2; break; // ldc
+                    case 0x13: stack.push(constant(constants, u2(code, pc + 1))); pc += 3; break;   // ldc_w
+                    case 0x59: stack.push(stack.peek()); pc += 1; break;                            // dup
+                    case 0x57: stack.pop(); pc += 1; break;                                         // pop
+                    case 0xc0: pc += 3; break;                                                      // checkcast
+                    case 0xbd: stack.push(new Object[(Integer) stack.pop()]); pc += 3; break;       // anewarray
+                    case 0x53: {                                                                    // aastore
+                        Object value = stack.pop();
+                        int index = (Integer) stack.pop();
+                        ((Object[]) stack.pop())[index] = value == NULL ? null : value;
+                        pc += 1;
+                        break;
+                    }
+                    case 0xbb: {                                                                    // new
+                        if (!LIST_CLASSES.contains(className(constants, u2(code, pc + 1)))) return null;
+                        stack.push(new ArrayList<Object>());
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb7: {                                                                    // invokespecial
+                        String[] method = member(constants, u2(code, pc + 1));
+                        if (!method[1].equals("<init>")) return null;
+                        if (method[2].equals("(I)V")) stack.pop();
+                        else if (!method[2].equals("()V")) return null;
+                        if (!(stack.pop() instanceof List)) return null;
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb8: {                                                                    // invokestatic
+                        String[] method = member(constants, u2(code, pc + 1));
+                        if (!LIST_FACTORIES.contains(method[0] + "." + method[1])) return null;
+                        stack.push(newList(stack, method[2]));
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb6: case 0xb9: {                                                         // invokevirtual, invokeinterface
+                        String[] method = member(constants, u2(code, pc + 1));
+                        if (!method[1].equals("add") || !method[2].equals("(Ljava/lang/Object;)Z")) return null;
+                        Object value = stack.pop();
+                        ((List<Object>) stack.pop()).add(value == NULL ? null : value);
+                        stack.push(Boolean.TRUE);
+                        pc += opcode == 0xb9 ? 5 : 3;
+                        break;
+                    }
+                    case 0xb3: {                                                                    // putstatic
+                        Object value = stack.pop();
+                        if (member(constants, u2(code, pc + 1))[1].equals("shortcuts")) shortcuts = value;
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb2: {                                                                    // getstatic
+                        if (!member(constants, u2(code, pc + 1))[1].equals("shortcuts") || shortcuts == null) return null;
+                        stack.push(shortcuts);
+                        pc += 3;
+                        break;
+                    }
+                    case 0xb1:                                                                      // return
+                        return toShortcuts(shortcuts);
+                    default:
+                        return null;
+                }
+            }
+        } catch (RuntimeException e) {
+            //unexpected stack contents
+            return null;
+        }
+
+        return null;
+    }
+
+    private static final Object NULL = new Object();
+
+    private static List<Object> newList(LinkedList<Object> stack, String descriptor) {
+        int argumentCount = argumentCount(descriptor);
+
+        List<Object> arguments = new ArrayList<Object>(argumentCount);
+
+        for (int i = 0; i < argumentCount; i++) {
+            arguments.add(0, stack.pop());
+        }
+
+        if (descriptor.startsWith("([")) {
+            // varargs
+            return new ArrayList<Object>(Arrays.asList((Object[]) arguments.get(0)));
+        }
+
+        return arguments;
+    }
+
+    private static List<Object[]> toShortcuts(Object value) {
+        if (!(value instanceof List)) return null;
+
+        List<Object[]> shortcuts = new ArrayList<Object[]>();
+
+        for (Object item : (List<?>) value) {
+            if (!(item instanceof Object[])) return null;
+
+            Object[] entry = ((Object[]) item).clone();
+
+            if (entry.length < 2 || !(entry[0] instanceof String) || entry[1] == null) return null;
+
+            for (int i = 0; i < entry.length; i++) {
+                if (entry[i] instanceof ClassName) {
+                    entry[i] = ((ClassName) entry[i]).name;
+                } else if (entry[i] != null && !(entry[i] instanceof String)) {
+                    return null;
+                }
+            }
+
+            shortcuts.add(entry);
+        }
+
+        return shortcuts;
+    }
+
+    private static Object constant(Object[] constants, int index) {
+        Object constant = constants[index];
+
+        if (constant instanceof Ref) {
+            Ref ref = (Ref) constant;
+
+            if (ref.tag == 8) return constants[ref.first];
+            if (ref.tag == 7) return new ClassName(((String) constants[ref.first]).replace('/', '.'));
+
+            throw new IllegalStateException("unsupported constant: " + ref.tag);
+        }
+
+        return constant;
+    }
+
+    private static String className(Object[] constants, int index) {
+        return (String) constants[((Ref) constants[index]).first];
+    }
+
+    /**
+     * @return owner, name and descriptor of a field or a method reference
+     */
+    private static String[] member(Object[] constants, int index) {
+        Ref ref = (Ref) constants[index];
+        Ref nameAndType = (Ref) constants[ref.second];
+
+        return new String[]{className(constants, ref.first),
+            (String) constants[nameAndType.first], (String) constants[nameAndType.second]};
+    }
+
+    /**
+     * @return the number of arguments of a method with object or int arguments
+     */
+    static int argumentCount(String descriptor) {
+        int count = 0;
+        int i = 1;
+
+        while (descriptor.charAt(i) != ')') {
+            char ch = descriptor.charAt(i);
+
+            while (ch == '[') {
+                ch = descriptor.charAt(++i);
+            }
+
+            if (ch == 'L') {
+                i = descriptor.indexOf(';', i);
+            } else if (ch == 'J' || ch == 'D') {
+                throw new IllegalStateException("unsupported argument type in " + descriptor);
+            }
+
+            i++;
+            count++;
+        }
+
+        return count;
+    }
+
+    private static int u2(byte[] code, int offset) {
+        return ((code[offset] & 0xff) << 8) | (code[offset + 1] & 0xff);
+    }
+
+    private static void skipAttributes(DataInputStream in) throws IOException {
+        int count = in.readUnsignedShort();
+
+        for (int i = 0; i < count; i++) {
+            in.readUnsignedShort();
+            skip(in, in.readInt());
+        }
+    }
+
+    private static void skip(DataInputStream in, int bytes) throws IOException {
+        in.readFully(new byte[bytes]);
+    }
+
+    private static byte[] readFully(ZipFile zip, ZipEntry entry) throws IOException {
+        InputStream in = zip.getInputStream(entry);
+
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+
+            byte[] buffer = new byte[4096];
+            int n;
+
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.chaschev.install;
+
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.transfer.AbstractTransferListener;
+import org.eclipse.aether.transfer.TransferEvent;
+import org.eclipse.aether.transfer.TransferResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes SHA-1 and SHA-256 of downloaded jars from the data buffers of transfer events, while the bytes stream to
+ * disk, so a downloaded jar is never read again to be hashed.
+ *
+ * Digests are recorded into a {@link DigestIndex} by {@link #record(DigestIndex)} after the resolution, when the jars
+ * are in their place. A digest is recorded only when the file has the downloaded length and its SHA-1 matches the
+ * <code>.sha1</code> file which has been fetched with it, if there is one. Resumed downloads are not digested.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class StreamingDigests extends AbstractTransferListener {
+    private static final Method RESUME_OFFSET = resumeOffsetMethod();
+
+    private final Log log;
+
+    private final Map<TransferResource, MessageDigest[]> digests = new ConcurrentHashMap<TransferResource, MessageDigest[]>();
+
+    private final List<Downloaded> downloaded = new ArrayList<Downloaded>();
+
+    private static final class Downloaded {
+        final File file;
+        final long length;
+        final DigestIndex.Digests digests;
+
+        Downloaded(File file, long length, DigestIndex.Digests digests) {
+            this.file = file;
+            this.length = length;
+            this.digests = digests;
+        }
+    }
+
+    public StreamingDigests(Log log) {
+        this.log = log;
+    }
+
+    private static boolean isDigested(TransferEvent event) {
+        return event.getRequestType() == TransferEvent.RequestType.GET &&
+            event.getResource().getFile() != null &&
+            event.getResource().getResourceName().endsWith(".jar");
+    }
+
+    /**
+     * The resume offset is in the resolver Maven runs with, but not in the API the plugin is built against.
+     */
+    private static boolean isResumed(TransferResource resource) {
+        if (RESUME_OFFSET == null) return false;
+
+        try {
+            return ((Long) RESUME_OFFSET.invoke(resource)) > 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static Method resumeOffsetMethod() {
+        try {
+            return TransferResource.class.getMethod("getResumeOffset");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void transferStarted(TransferEvent event) {
+        if (!isDigested(event)) return;
+
+        if (isResumed(event.getResource())) {
+            // a resumed transfer streams only the tail of the file, it's hashed by the index when it's used
+            digests.remove(event.getResource());
+            return;
+        }
+
+        // a restarted transfer starts over
+        digests.put(event.getResource(), new MessageDigest[]{
+            DigestIndex.newDigest("SHA-1"), DigestIndex.newDigest("SHA-256")});
+    }
+
+    @Override
+    public void transferProgressed(TransferEvent event) {
+        MessageDigest[] resourceDigests = digests.get(event.getResource());
+
+        if (resourceDigests == null) return;
+
+        ByteBuffer buffer = event.getDataBuffer();
+
+        if (buffer == null) return;
+
+        resourceDigests[0].update(buffer.duplicate());
+        resourceDigests[1].update(buffer.duplicate());
+    }
+
+    @Override
+    public void transferSucceeded(TransferEvent event) {
+        MessageDigest[] resourceDigests = digests.remove(event.getResource());
+
+        if (resourceDigests == null || isResumed(event.getResource())) return;
+
+        Downloaded jar = new Downloaded(event.getResource().getFile(), event.getTransferredBytes(),
+            new DigestIndex.Digests(DigestIndex.toHex(resourceDigests[0].digest()),
+                DigestIndex.toHex(resourceDigests[1].digest())));
+
+        synchronized (downloaded) {
+            downloaded.add(jar);
+        }
+    }
+
+    @Override
+    public void transferFailed(TransferEvent event) {
+        digests.remove(event.getResource());
+    }
+
+    @Override
+    public void transferCorrupted(TransferEvent event) {
+        digests.remove(event.getResource());
+    }
+
+    /**
+     * Records digests of jars downloaded since the last call.
+     *
+     * @return the number of recorded digests
+     */
+    public int record(DigestIndex index) {
+        List<Downloaded> jars;
+
+        synchronized (downloaded) {
+            jars = new ArrayList<Downloaded>(downloaded);
+            downloaded.clear();
+        }
+
+        int count = 0;
+
+        for (Downloaded jar : jars) {
+            if (!jar.file.isFile() || jar.file.length() != jar.length) {
+                log.debug("not recording the digest of " + jar.file + ", it has changed since the download");
+                continue;
+            }
+
+            String expectedSha1 = readChecksum(new File(jar.file.getPath() + ".sha1"));
+
+            if (expectedSha1 != null && !expectedSha1.equalsIgnoreCase(jar.digests.sha1)) {
+                log.warn("SHA-1 of " + jar.file + " is " + jar.digests.sha1 + ", but the repository has " + expectedSha1);
+                continue;
+            }
+
+            index.put(jar.file, jar.digests);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return the first word of a checksum file or null when there is no file
+     */
+    private static String readChecksum(File file) {
+        if (!file.isFile()) return null;
+
+        try {
+            String content = new String(ClasspathIndex.readFully(file), "US-ASCII").trim();
+
+            int space = content.indexOf(' ');
+
+            return space < 0 ? content : content.substring(0, space);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.chaschev.install;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Phase timers written as a JSON report. Enabled with <code>-Dinstallation.timings=path</code> for the goals and
+ * with the <code>INSTALLATION_TIMINGS=path</code> environment variable (or the same system property) for shortcuts.
+ *
+ * Durations of a phase recorded several times are summed. Marks are milliseconds since the origin, which is the JVM
+ * start for shortcuts. Uses only JDK classes, because it's loaded by the Runner.
+ *
+ * <pre>
+ * {"goal": "install", "totalMs": 1234.5,
+ *  "phases": {"collect": {"ms": 456.7, "count": 1}, ...},
+ *  "marks": {"main": 120}}
+ * </pre>
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class Timings {
+    public static final String PROPERTY = "installation.timings";
+    public static final String ENV = "INSTALLATION_TIMINGS";
+
+    private final long originMillis;
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    private final Map<String, long[]> phases = new LinkedHashMap<String, long[]>();
+    private final Map<String, Long> marks = new LinkedHashMap<String, Long>();
+
+    public Timings() {
+        this(System.currentTimeMillis());
+    }
+
+    public Timings(long originMillis) {
+        this.originMillis = originMillis;
+    }
+
+    /**
+     * @return the report file for a launched shortcut or null when timings are not requested
+     */
+    public static File reportFile() {
+        String path = System.getProperty(PROPERTY);
+
+        if (path == null) {
+            path = System.getenv(ENV);
+        }
+
+        return path == null || path.isEmpty() ? null : new File(path);
+    }
+
+    public synchronized Timings put(String name, Object value) {
+        attributes.put(name, value);
+        return this;
+    }
+
+    /**
+     * Adds time elapsed since <code>startNanos</code> to the phase.
+     */
+    public synchronized void record(String phase, long startNanos) {
+        long[] phaseTimes = phases.get(phase);
+
+        if (phaseTimes == null) {
+            phases.put(phase, phaseTimes = new long[2]);
+        }
+
+        phaseTimes[0] += System.nanoTime() - startNanos;
+        phaseTimes[1]++;
+    }
+
+    /**
+     * Records the time of an event, the first one wins.
+     */
+    public synchronized void mark(String event) {
+        if (!marks.containsKey(event)) {
+            marks.put(event, System.currentTimeMillis() - originMillis);
+        }
+    }
+
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{");
+
+        for (Map.Entry<String, Object> entry : attributes.entrySet()) {
+            appendString(sb, entry.getKey()).append(": ");
+
+            Object value = entry.getValue();
+
+            if (value instanceof Number || value instanceof Boolean) {
+                sb.append(value);
+            } else {
+                appendString(sb, String.valueOf(value));
+            }
+
+            sb.append(", ");
+        }
+
+        sb.append("\"totalMs\": ").append(millis(System.nanoTime() - startNanos));
+
+        sb.append(",\n \"phases\": {");
+
+        boolean first = true;
+
+        for (Map.Entry<String, long[]> entry : phases.entrySet()) {
+            if (!first) sb.append(", ");
+            first = false;
+
+            appendString(sb, entry.getKey())
+                .append(": {\"ms\": ").append(millis(entry.getValue()[0]))
+                .append(", \"count\": ").append(entry.getValue()[1]).append('}');
+        }
+
+        sb.append("},\n \"marks\": {");
+
+        first = true;
+
+        for (Map.Entry<String, Long> entry : marks.entrySet()) {
+            if (!first) sb.append(", ");
+            first = false;
+
+            appendString(sb, entry.getKey()).append(": ").append(entry.getValue());
+        }
+
+        return sb.append("}}\n").toString();
+    }
+
+    public void write(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+
+        try {
+            writer.write(toJson());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.valueOf(Math.round(nanos / 100000.0) / 10.0);
+    }
+
+    static StringBuilder appendString(StringBuilder sb, String s) {
+        sb.append('"');
+
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+
+            switch (ch) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+            }
+        }
+
+        return sb.append('"');
+    }
+}
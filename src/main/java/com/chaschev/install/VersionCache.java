@@ -0,0 +1,115 @@
+package com.chaschev.install;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import org.eclipse.aether.repository.RemoteRepository;
+
+import java.io.*;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Caches versions chosen for LATEST and RELEASE, so that repeated calls don't query remote repositories within the
+ * TTL. Entries are stored as <code>groupId:artifactId[:snapshots]@repositories=version timestamp</code>, where
+ * <code>repositories</code> is a hash of the repository URLs, so a version found in one set of repositories isn't
+ * used for another.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class VersionCache {
+    private final File file;
+    private final long ttlMs;
+
+    public VersionCache(File file, long ttlMs) {
+        this.file = file;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * @return the cached version or null when it's missing or expired
+     */
+    public String get(String groupArtifact, boolean snapshots, List<RemoteRepository> repositories) {
+        String value = load().getProperty(key(groupArtifact, snapshots, repositories));
+
+        if (value == null) return null;
+
+        int space = value.indexOf(' ');
+
+        if (space < 0) return null;
+
+        try {
+            long timestamp = Long.parseLong(value.substring(space + 1));
+
+            if (System.currentTimeMillis() - timestamp > ttlMs) return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return value.substring(0, space);
+    }
+
+    public synchronized void put(String groupArtifact, boolean snapshots, List<RemoteRepository> repositories,
+                                 String version) throws IOException {
+        Properties properties = load();
+
+        properties.setProperty(key(groupArtifact, snapshots, repositories), version + " " + System.currentTimeMillis());
+
+        store(properties, file);
+    }
+
+    private static String key(String groupArtifact, boolean snapshots, List<RemoteRepository> repositories) {
+        StringBuilder urls = new StringBuilder();
+
+        for (RemoteRepository repository : repositories) {
+            urls.append(repository.getUrl()).append('\n');
+        }
+
+        return (snapshots ? groupArtifact + ":snapshots" : groupArtifact) + "@" +
+            Hashing.sha1().hashString(urls, Charsets.UTF_8).toString().substring(0, 12);
+    }
+
+    private Properties load() {
+        Properties properties = new Properties();
+
+        if (!file.isFile()) return properties;
+
+        try {
+            InputStream in = new FileInputStream(file);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            //a broken cache is an empty cache
+        }
+
+        return properties;
+    }
+
+    /**
+     * Writes to a temp file first and then renames it, so concurrent readers never see a partial file.
+     */
+    static void store(Properties properties, File file) throws IOException {
+        file.getParentFile().mkdirs();
+
+        File temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+
+        OutputStream out = new FileOutputStream(temp);
+
+        try {
+            properties.store(out, null);
+        } finally {
+            out.close();
+        }
+
+        if (!temp.renameTo(file)) {
+            file.delete();
+
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("could not write " + file);
+            }
+        }
+    }
+}
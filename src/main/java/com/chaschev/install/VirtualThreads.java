@@ -0,0 +1,115 @@
+package com.chaschev.install;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Virtual threads for launched apps, JDK 21+. The API is called via reflection, because the plugin is built for
+ * older JDKs.
+ *
+ * With virtual threads on, the app gets a virtual-thread-per-task executor in
+ * <code>System.getProperties().get("installation.executor")</code>. Uncaught exceptions of the executor's threads are
+ * reported to the app's thread group, as for platform threads. main() itself runs on a platform thread of the app's
+ * thread group, so platform threads it starts are joined and cleaned up as usual.
+ *
+ * Virtual threads don't belong to the app's thread group, so the executor's threads are counted by its thread
+ * factory instead, and {@link #awaitTasks()} waits until all of them have finished.
+ *
+ * Only JDK classes are used here, because the Runner is launched with its own jar on the classpath.
+ *
+ * @author Andrey Chaschev chaschev@gmail.com
+ */
+public class VirtualThreads {
+    /**
+     * Turns virtual threads on for shortcuts, i.e. <code>-Dinstallation.virtualThreads=true</code> in JVM options.
+     */
+    public static final String PROPERTY = "installation.virtualThreads";
+
+    /**
+     * A system property holding the executor. It's an object, so it's read with <code>System.getProperties().get()</code>.
+     */
+    public static final String EXECUTOR_PROPERTY = "installation.executor";
+
+    private final Thread.UncaughtExceptionHandler handler;
+    private final ExecutorService executor;
+
+    private int running;
+
+    public VirtualThreads(Thread.UncaughtExceptionHandler handler) {
+        this.handler = handler;
+
+        try {
+            final ThreadFactory factory = (ThreadFactory) builderClass().getMethod("factory").invoke(builder());
+
+            ThreadFactory countingFactory = new ThreadFactory() {
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = factory.newThread(new Runnable() {
+                        public void run() {
+                            try {
+                                runnable.run();
+                            } finally {
+                                finished();
+                            }
+                        }
+                    });
+
+                    if (thread != null) {
+                        started();
+                    }
+
+                    return thread;
+                }
+            };
+
+            executor = (ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, countingFactory);
+        } catch (Exception e) {
+            throw new IllegalStateException("could not create a virtual thread executor", e);
+        }
+    }
+
+    public static boolean isSupported() {
+        return Runner.javaVersion() >= 21;
+    }
+
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Waits for executor's threads like for non-daemon threads, then shuts the executor down. A task started by
+     * another task is counted before its parent finishes, so the count drops to zero only when all work is done.
+     */
+    public void awaitTasks() throws InterruptedException {
+        synchronized (this) {
+            while (running > 0) {
+                wait();
+            }
+        }
+
+        executor.shutdown();
+    }
+
+    private synchronized void started() {
+        running++;
+    }
+
+    private synchronized void finished() {
+        if (--running == 0) {
+            notifyAll();
+        }
+    }
+
+    private Object builder() throws Exception {
+        Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+
+        return builderClass().getMethod("uncaughtExceptionHandler", Thread.UncaughtExceptionHandler.class)
+            .invoke(builder, handler);
+    }
+
+    private static Class<?> builderClass() throws ClassNotFoundException {
+        return Class.forName("java.lang.Thread$Builder");
+    }
+}